@@ -0,0 +1,112 @@
+package douma.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic address and driver name lists for benchmarking. String lengths are drawn
+ * uniformly from a configurable range and each letter is a vowel with a configurable probability,
+ * since length parity, common factors of lengths and vowel counts are what drive the suitability
+ * score. The same seed always produces the same instance.
+ */
+public class InstanceGenerator {
+    private static final char[] VOWELS = "aeiou".toCharArray();
+    private static final char[] CONSONANTS = "bcdfghjklmnpqrstvwxyz".toCharArray();
+
+    private final Random random;
+    private int minAddressLength = 5;
+    private int maxAddressLength = 30;
+    private int minNameLength = 3;
+    private int maxNameLength = 15;
+    private double addressVowelProbability = 0.4;
+    private double nameVowelProbability = 0.4;
+
+    public InstanceGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sets the inclusive range of address lengths
+     * @throws IllegalArgumentException if the range is empty or starts below 1
+     */
+    public InstanceGenerator setAddressLength(int minLength, int maxLength) {
+        checkRange(minLength, maxLength);
+        this.minAddressLength = minLength;
+        this.maxAddressLength = maxLength;
+        return this;
+    }
+
+    /**
+     * Sets the inclusive range of driver name lengths
+     * @throws IllegalArgumentException if the range is empty or starts below 1
+     */
+    public InstanceGenerator setNameLength(int minLength, int maxLength) {
+        checkRange(minLength, maxLength);
+        this.minNameLength = minLength;
+        this.maxNameLength = maxLength;
+        return this;
+    }
+
+    /**
+     * Sets the probability that any letter of an address is a vowel
+     */
+    public InstanceGenerator setAddressVowelProbability(double probability) {
+        checkProbability(probability);
+        this.addressVowelProbability = probability;
+        return this;
+    }
+
+    /**
+     * Sets the probability that any letter of a driver name is a vowel
+     */
+    public InstanceGenerator setNameVowelProbability(double probability) {
+        checkProbability(probability);
+        this.nameVowelProbability = probability;
+        return this;
+    }
+
+    /**
+     * Returns <code>count</code> generated addresses
+     */
+    public List<String> generateAddresses(int count) {
+        return generate(count, minAddressLength, maxAddressLength, addressVowelProbability);
+    }
+
+    /**
+     * Returns <code>count</code> generated driver names
+     */
+    public List<String> generateNames(int count) {
+        return generate(count, minNameLength, maxNameLength, nameVowelProbability);
+    }
+
+    private List<String> generate(int count, int minLength, int maxLength, double vowelProbability) {
+        List<String> strings = new ArrayList<>(count);
+        StringBuilder builder = new StringBuilder(maxLength);
+        for (int i = 0; i < count; i++) {
+            builder.setLength(0);
+            int length = minLength + random.nextInt(maxLength - minLength + 1);
+            for (int k = 0; k < length; k++) {
+                if (random.nextDouble() < vowelProbability) {
+                    builder.append(VOWELS[random.nextInt(VOWELS.length)]);
+                } else {
+                    builder.append(CONSONANTS[random.nextInt(CONSONANTS.length)]);
+                }
+            }
+            strings.add(builder.toString());
+        }
+        return strings;
+    }
+
+    private static void checkRange(int minLength, int maxLength) {
+        if (minLength < 1 || maxLength < minLength) {
+            throw new IllegalArgumentException("Length range must satisfy 1 <= min <= max");
+        }
+    }
+
+    private static void checkProbability(double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1");
+        }
+    }
+}
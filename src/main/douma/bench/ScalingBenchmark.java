@@ -0,0 +1,229 @@
+package douma.bench;
+
+import douma.solver.AssignmentSolver;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * End-to-end scaling benchmark for {@link AssignmentSolver}. For each instance size it generates an
+ * instance, solves it and extracts the assignments, and writes one CSV line per phase with the wall
+ * time, peak heap, bytes allocated, allocation rate and garbage collection count and time.
+ *
+ * Before the first size the solver is run a few times untimed so that the JIT has compiled it, and
+ * each size is then solved several times. The solve line reports the repetition with the median wall
+ * time, so a single slow or fast run does not decide the outcome.
+ *
+ * The solve line also carries the empirical scaling exponent log(t2 / t1) / log(n2 / n1) between the
+ * median solve times of the previous size and this one. An exponent well above 3 suggests the solver
+ * has regressed from O(n^3), and a warning is printed when it exceeds the configured limit.
+ */
+public class ScalingBenchmark {
+    private static final String HEADER = "addresses,drivers,phase,wallMillis,peakHeapBytes,allocatedBytes," +
+            "allocationRateMBps,gcCount,gcMillis,scalingExponent";
+    private static final double DEFAULT_EXPONENT_LIMIT = 3.5;
+    private static final int DEFAULT_WARMUP_SOLVES = 3;
+    private static final int DEFAULT_REPETITIONS = 5;
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private int warmupSolves = DEFAULT_WARMUP_SOLVES;
+    private int repetitions = DEFAULT_REPETITIONS;
+    private long startNanos;
+    private long startAllocated;
+    private long startGcCount;
+    private long startGcMillis;
+
+    public ScalingBenchmark() {
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws FileNotFoundException {
+        if (args == null || args.length < 1 || args.length > 5) {
+            throw new IllegalArgumentException("Usage: ScalingBenchmark <output csv> [sizes, e.g. 100,200,400] " +
+                    "[drivers per address, e.g. 1.0] [seed] [repetitions per size]");
+        }
+        List<Integer> sizes = new ArrayList<>();
+        for (String size: (args.length > 1 ? args[1] : "100,200,400,800").split(",")) {
+            sizes.add(Integer.parseInt(size.trim()));
+        }
+        double driverRatio = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+
+        ScalingBenchmark benchmark = new ScalingBenchmark();
+        if (args.length > 4) {
+            benchmark.setRepetitions(Integer.parseInt(args[4]));
+        }
+        try (PrintWriter writer = new PrintWriter(args[0])) {
+            benchmark.run(sizes, driverRatio, seed, DEFAULT_EXPONENT_LIMIT, writer);
+        }
+    }
+
+    /**
+     * Sets how many untimed solves of the first size are run before measuring
+     */
+    public void setWarmupSolves(int warmupSolves) {
+        if (warmupSolves < 0) {
+            throw new IllegalArgumentException("The number of warm-up solves cannot be negative");
+        }
+        this.warmupSolves = warmupSolves;
+    }
+
+    /**
+     * Sets how many times each size is solved; the median solve is reported
+     */
+    public void setRepetitions(int repetitions) {
+        if (repetitions < 1) {
+            throw new IllegalArgumentException("Each size must be solved at least once");
+        }
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Runs the benchmark for each number of addresses in <code>sizes</code>
+     *
+     * @param sizes numbers of addresses, in increasing order
+     * @param driverRatio number of drivers per address, 1.0 for square instances
+     * @param seed seed of the instance generator
+     * @param exponentLimit scaling exponent above which a warning is printed
+     * @param writer destination of the CSV lines
+     */
+    public void run(List<Integer> sizes, double driverRatio, long seed, double exponentLimit, PrintWriter writer) {
+        writer.println(HEADER);
+        if (!sizes.isEmpty()) {
+            warmUp(sizes.get(0), driverRatio, seed);
+        }
+        int previousSize = -1;
+        long previousSolveNanos = -1;
+        for (int size: sizes) {
+            int numDrivers = Math.max(1, (int) Math.round(size * driverRatio));
+
+            beginPhase();
+            InstanceGenerator generator = new InstanceGenerator(seed);
+            List<String> addresses = generator.generateAddresses(size);
+            List<String> names = generator.generateNames(numDrivers);
+            writer.println(endPhase(size, numDrivers, "generate") + ",");
+
+            // solve repeatedly and keep the measurement of the run with the median wall time
+            AssignmentSolver solver = null;
+            long[] repetitionNanos = new long[repetitions];
+            String[] repetitionLines = new String[repetitions];
+            for (int r = 0; r < repetitions; r++) {
+                solver = new AssignmentSolver(addresses, names);
+                beginPhase();
+                solver.solve();
+                repetitionNanos[r] = System.nanoTime() - startNanos;
+                repetitionLines[r] = endPhase(size, numDrivers, "solve");
+            }
+            int median = medianIndex(repetitionNanos);
+            long solveNanos = repetitionNanos[median];
+            String exponent = "";
+            if (previousSize > 0 && size != previousSize && previousSolveNanos > 0) {
+                double value = Math.log((double) solveNanos / previousSolveNanos) / Math.log((double) size / previousSize);
+                exponent = String.format(Locale.ROOT, "%.3f", value);
+                if (value > exponentLimit) {
+                    System.err.printf("Warning: solve time grew as n^%.2f between %d and %d addresses\n",
+                            value, previousSize, size);
+                }
+            }
+            writer.println(repetitionLines[median] + "," + exponent);
+
+            beginPhase();
+            solver.getAssignments();
+            writer.println(endPhase(size, numDrivers, "result") + ",");
+            writer.flush();
+
+            previousSize = size;
+            previousSolveNanos = solveNanos;
+        }
+    }
+
+    private void warmUp(int size, double driverRatio, long seed) {
+        InstanceGenerator generator = new InstanceGenerator(seed);
+        List<String> addresses = generator.generateAddresses(size);
+        List<String> names = generator.generateNames(Math.max(1, (int) Math.round(size * driverRatio)));
+        for (int w = 0; w < warmupSolves; w++) {
+            new AssignmentSolver(addresses, names).solve();
+        }
+    }
+
+    /*
+     * Index of the median of the given times; for an even count the lower of the two middle ones, so
+     * that the reported line is always a measured run
+     */
+    private static int medianIndex(long[] nanos) {
+        Integer[] order = new Integer[nanos.length];
+        for (int r = 0; r < order.length; r++) {
+            order[r] = r;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(nanos[a], nanos[b]));
+        return order[(order.length - 1) / 2];
+    }
+
+    private void beginPhase() {
+        System.gc();
+        for (MemoryPoolMXBean pool: heapPools) {
+            pool.resetPeakUsage();
+        }
+        startGcCount = 0;
+        startGcMillis = 0;
+        for (GarbageCollectorMXBean collector: collectors) {
+            startGcCount += Math.max(0, collector.getCollectionCount());
+            startGcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        startAllocated = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /*
+     * Measures the phase started by beginPhase; the line leaves out the scaling exponent column
+     */
+    private String endPhase(int numAddresses, int numDrivers, String phase) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocated = allocatedBytes();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool: heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        long gcCount = -startGcCount;
+        long gcMillis = -startGcMillis;
+        for (GarbageCollectorMXBean collector: collectors) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+
+        long allocatedBytes = allocated < 0 || startAllocated < 0 ? -1 : allocated - startAllocated;
+        double allocationRate = allocatedBytes < 0 || elapsedNanos == 0
+                ? -1 : (allocatedBytes / (1024.0 * 1024.0)) / (elapsedNanos / 1e9);
+        return String.format(Locale.ROOT, "%d,%d,%s,%.3f,%d,%d,%.1f,%d,%d", numAddresses, numDrivers, phase,
+                elapsedNanos / 1e6, peakHeap, allocatedBytes, allocationRate, gcCount, gcMillis);
+    }
+
+    /*
+     * Bytes allocated so far by the current thread, -1 if the JVM does not report it
+     */
+    private long allocatedBytes() {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
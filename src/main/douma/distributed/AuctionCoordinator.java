@@ -0,0 +1,509 @@
+package douma.distributed;
+
+import douma.solver.AssignmentResult;
+import douma.util.Pair;
+import douma.util.ScoreUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Solves an assignment problem that is too large for one JVM by splitting it across worker processes
+ * that run a distributed (Jacobi) auction. The smaller of the two sides bids for the larger one; the
+ * bidders are split into contiguous shards and each {@link AuctionWorker} only holds the benefits of
+ * its own shard. The coordinator keeps the prices and the current assignment, collects one bid from
+ * every unassigned bidder per round, awards each object to its highest bidder and broadcasts the
+ * prices that changed.
+ *
+ * The auction runs in epsilon-scaling phases. The first phase bids with an increment epsilon of about
+ * the largest benefit divided by {@link #EPSILON_FACTOR}, and each later phase divides epsilon by that
+ * factor until it reaches one. A phase starts from an empty assignment but keeps the prices of the
+ * previous phase, so the coarse phases settle the prices quickly and the fine ones only adjust them.
+ * Benefits are scaled to integers and multiplied by (number of objects + 1) so that the last phase,
+ * with an increment of one, yields the optimal assignment rather than one within epsilon of it.
+ *
+ * When there are more objects than bidders the coordinator adds dummy bidders with a benefit of zero
+ * for every object, so that every object is assigned at the end of a phase and prices left over from
+ * an earlier phase cannot keep an object out of the optimal assignment. Dummy bidders need no
+ * benefits, so the coordinator bids for them itself on the cheapest objects.
+ *
+ * If a worker fails, or does not answer within the worker timeout, the coordinator waits for a
+ * replacement worker to connect, sends it the shard and the current prices, and repeats the request,
+ * so workers can be restarted at any time while solving, including before they first answered.
+ */
+public class AuctionCoordinator {
+    private static final int DEFAULT_RESTART_TIMEOUT_MILLIS = 60000;
+    private static final int DEFAULT_WORKER_TIMEOUT_MILLIS = 600000;
+    private static final int UNASSIGNED = -1;
+    private static final int DUMMY = -2;
+
+    /**
+     * Factor by which epsilon shrinks from one phase to the next
+     */
+    static final long EPSILON_FACTOR = 5;
+
+    private final List<String> addresses;
+    private final List<String> names;
+    private final int numShards;
+    private final boolean biddersAreAddresses;
+    private final List<String> bidders;
+    private final List<String> objects;
+    private final int[] shardStart;
+    private int restartTimeoutMillis;
+    private int workerTimeoutMillis;
+    private ServerSocket serverSocket;
+    private Connection[] connections;
+    private long[] prices;
+    private volatile int numRounds;
+    private AssignmentResult result;
+
+    public AuctionCoordinator(final List<String> addresses, final List<String> names, int numShards) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.addresses = new ArrayList<>(addresses);
+        this.names = new ArrayList<>(names);
+        this.biddersAreAddresses = this.addresses.size() <= this.names.size();
+        this.bidders = biddersAreAddresses ? this.addresses : this.names;
+        this.objects = biddersAreAddresses ? this.names : this.addresses;
+        this.numShards = Math.max(1, Math.min(numShards, bidders.size()));
+        this.shardStart = new int[this.numShards + 1];
+        for (int s = 0; s <= this.numShards; s++) {
+            shardStart[s] = (int) ((long) bidders.size() * s / this.numShards);
+        }
+        this.restartTimeoutMillis = DEFAULT_RESTART_TIMEOUT_MILLIS;
+        this.workerTimeoutMillis = DEFAULT_WORKER_TIMEOUT_MILLIS;
+        this.result = null;
+    }
+
+    /**
+     * Opens the socket workers connect to. A port of 0 picks a free port, see {@link #getPort()}.
+     */
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, numShards, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Opens the socket workers connect to on the given local address, for workers on other hosts
+     */
+    public void start(int port, InetAddress bindAddress) throws IOException {
+        serverSocket = new ServerSocket(port, numShards, bindAddress);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of workers that must connect before solving can start
+     */
+    public int getNumShards() {
+        return numShards;
+    }
+
+    /**
+     * Sets how long to wait for a worker to connect, initially or to replace a failed worker
+     */
+    public void setRestartTimeoutMillis(int restartTimeoutMillis) {
+        this.restartTimeoutMillis = restartTimeoutMillis;
+    }
+
+    /**
+     * Sets how long to wait for a worker to answer before it is treated as failed and replaced. This
+     * must exceed the time a worker needs to compute the benefits of its shard.
+     */
+    public void setWorkerTimeoutMillis(int workerTimeoutMillis) {
+        this.workerTimeoutMillis = workerTimeoutMillis;
+    }
+
+    /**
+     * Starts a worker in a new JVM on this host using the current java executable and class path
+     *
+     * Precondition: start has been called
+     */
+    public Process launchLocalWorker() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                AuctionWorker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(),
+                Integer.toString(getPort()));
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    /**
+     * Waits for the workers to connect and runs the auction to completion
+     *
+     * Precondition: start has been called
+     *
+     * @return the sum of the suitability scores associated with each assignment
+     * @throws IOException if a worker is missing or fails and no replacement connects within the restart
+     *         timeout
+     */
+    public double solve() throws IOException {
+        int numBidders = bidders.size();
+        long multiplier = objects.size() + 1L;
+        numRounds = 0;
+        prices = new long[objects.size()];
+        int[] objectOfBidder = new int[numBidders];
+        int[] ownerOfObject = new int[objects.size()];
+
+        connections = new Connection[numShards];
+        try {
+            long maxBenefit = 0;
+            for (int s = 0; s < numShards && numBidders > 0; s++) {
+                connections[s] = connectShard(s, multiplier);
+            }
+            for (int s = 0; s < numShards && numBidders > 0; s++) {
+                try {
+                    maxBenefit = Math.max(maxBenefit, connections[s].in.readLong());
+                } catch (IOException e) {
+                    maxBenefit = Math.max(maxBenefit, replaceWorker(s, multiplier));
+                }
+            }
+
+            List<Integer> changedObjects = new ArrayList<>();
+            long epsilon = Math.max(1, maxBenefit / EPSILON_FACTOR);
+            while (numBidders > 0) {
+                runPhase(epsilon, multiplier, objectOfBidder, ownerOfObject, changedObjects);
+                if (epsilon == 1) {
+                    break;
+                }
+                epsilon = Math.max(1, epsilon / EPSILON_FACTOR);
+            }
+
+            for (Connection connection: connections) {
+                if (connection != null) {
+                    try {
+                        connection.out.writeByte(AuctionProtocol.MSG_SHUTDOWN);
+                        connection.out.flush();
+                    } catch (IOException e) {
+                        // the auction is finished, so a worker that has died since needs no shutdown
+                    }
+                }
+            }
+        } finally {
+            for (Connection connection: connections) {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        }
+
+        return buildResult(objectOfBidder);
+    }
+
+    /**
+     * Returns the number of bidding rounds run so far, which may be read while solve is running
+     */
+    public int getNumRounds() {
+        return numRounds;
+    }
+
+    /**
+     * Returns a list of the assignments determined by the auction
+     * @return null if called before solve
+     */
+    public List<Pair<String, String>> getAssignments() {
+        return result == null ? null : result.getAssignments();
+    }
+
+    /**
+     * Returns the assignments determined by the auction in index form
+     * @return null if called before solve
+     */
+    public AssignmentResult getResult() {
+        return result;
+    }
+
+    /**
+     * Closes the socket workers connect to
+     */
+    public void stop() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    /*
+     * Runs the auction with a fixed epsilon, starting from an empty assignment and the current prices,
+     * until every bidder and every dummy bidder holds an object. The objects whose price changed are
+     * left in changedObjects for the first round of the next phase.
+     */
+    private void runPhase(long epsilon, long multiplier, int[] objectOfBidder, int[] ownerOfObject,
+                          List<Integer> changedObjects) throws IOException {
+        Arrays.fill(objectOfBidder, UNASSIGNED);
+        Arrays.fill(ownerOfObject, UNASSIGNED);
+        int numUnassigned = objectOfBidder.length;
+        int numUnassignedDummies = objects.size() - objectOfBidder.length;
+
+        // cheapest objects first; an entry is stale once the price of its object has moved on
+        List<long[]> entries = new ArrayList<>(objects.size());
+        for (int j = 0; j < prices.length; j++) {
+            entries.add(new long[] {prices[j], j});
+        }
+        PriorityQueue<long[]> cheapest = new PriorityQueue<>(Math.max(1, entries.size()),
+                (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        cheapest.addAll(entries);
+
+        long[] bestBid = new long[objects.size()];
+        int[] bestBidder = new int[objects.size()];
+        Arrays.fill(bestBidder, -1);
+        List<Integer> biddingObjects = new ArrayList<>();
+        while (numUnassigned > 0 || numUnassignedDummies > 0) {
+            if (numUnassigned > 0) {
+                collectBids(epsilon, multiplier, changedObjects, objectOfBidder, bestBid, bestBidder,
+                        biddingObjects);
+
+                // award each object to its highest bidder, displacing the previous owner
+                for (int object: biddingObjects) {
+                    int winner = bestBidder[object];
+                    int previousOwner = ownerOfObject[object];
+                    if (previousOwner == DUMMY) {
+                        numUnassignedDummies++;
+                    } else if (previousOwner != UNASSIGNED) {
+                        objectOfBidder[previousOwner] = UNASSIGNED;
+                        numUnassigned++;
+                    }
+                    numUnassigned--;
+                    ownerOfObject[object] = winner;
+                    objectOfBidder[winner] = object;
+                    prices[object] = bestBid[object];
+                    cheapest.add(new long[] {prices[object], object});
+                    bestBidder[object] = -1;
+                    changedObjects.add(object);
+                }
+                biddingObjects.clear();
+            }
+
+            // a dummy bidder values every object at minus its price, so it bids for the cheapest one
+            while (numUnassignedDummies > 0) {
+                int object = (int) pollCurrent(cheapest)[1];
+                long[] second = peekCurrent(cheapest);
+                long bid = (second == null ? prices[object] : second[0]) + epsilon;
+                int previousOwner = ownerOfObject[object];
+                if (previousOwner == UNASSIGNED) {
+                    numUnassignedDummies--;
+                } else if (previousOwner != DUMMY) {
+                    objectOfBidder[previousOwner] = UNASSIGNED;
+                    numUnassigned++;
+                    numUnassignedDummies--;
+                }
+                ownerOfObject[object] = DUMMY;
+                prices[object] = bid;
+                cheapest.add(new long[] {bid, object});
+                changedObjects.add(object);
+            }
+        }
+    }
+
+    private long[] pollCurrent(PriorityQueue<long[]> cheapest) {
+        long[] entry = peekCurrent(cheapest);
+        cheapest.poll();
+        return entry;
+    }
+
+    private long[] peekCurrent(PriorityQueue<long[]> cheapest) {
+        while (!cheapest.isEmpty() && cheapest.peek()[0] != prices[(int) cheapest.peek()[1]]) {
+            cheapest.poll();
+        }
+        return cheapest.peek();
+    }
+
+    /*
+     * Sends the price changes of the previous round and the unassigned bidders to every shard and
+     * collects their bids, replacing any worker that fails on the way
+     */
+    private void collectBids(long epsilon, long multiplier, List<Integer> changedObjects, int[] objectOfBidder,
+                             long[] bestBid, int[] bestBidder, List<Integer> biddingObjects) throws IOException {
+        boolean[] failed = new boolean[numShards];
+        for (int s = 0; s < numShards; s++) {
+            try {
+                sendRound(connections[s], s, epsilon, changedObjects, objectOfBidder);
+            } catch (IOException e) {
+                failed[s] = true;
+            }
+        }
+        changedObjects.clear();
+
+        for (int s = 0; s < numShards; s++) {
+            while (true) {
+                if (failed[s]) {
+                    replaceWorker(s, multiplier);
+                    try {
+                        sendRound(connections[s], s, epsilon, changedObjects, objectOfBidder);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    failed[s] = false;
+                }
+                try {
+                    readBids(connections[s], s, bestBid, bestBidder, biddingObjects);
+                    break;
+                } catch (IOException e) {
+                    failed[s] = true;
+                }
+            }
+        }
+        numRounds++;
+    }
+
+    /*
+     * Replaces the worker of a shard with the next one to connect, until one answers INIT
+     *
+     * @return the largest benefit of the shard
+     * @throws IOException if no worker connects within the restart timeout
+     */
+    private long replaceWorker(int shard, long multiplier) throws IOException {
+        while (true) {
+            connections[shard].close();
+            connections[shard] = connectShard(shard, multiplier);
+            try {
+                return connections[shard].in.readLong();
+            } catch (IOException e) {
+                // failed or timed out before answering, wait for the next worker
+            }
+        }
+    }
+
+    /*
+     * Accepts the next worker for a shard and sends it INIT, moving on to the next worker if sending
+     * fails. Reads from the worker time out after the worker timeout.
+     *
+     * @throws IOException if no worker connects within the restart timeout
+     */
+    private Connection connectShard(int shard, long multiplier) throws IOException {
+        serverSocket.setSoTimeout(restartTimeoutMillis);
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                throw new IOException("No worker connected for shard " + shard, e);
+            }
+            try {
+                Connection connection = new Connection(socket, workerTimeoutMillis);
+                sendInit(connection, shard, multiplier);
+                return connection;
+            } catch (IOException e) {
+                close(socket);
+            }
+        }
+    }
+
+    private void sendInit(Connection connection, int shard, long multiplier) throws IOException {
+        DataOutputStream out = connection.out;
+        out.writeByte(AuctionProtocol.MSG_INIT);
+        out.writeInt(shard);
+        out.writeBoolean(biddersAreAddresses);
+        out.writeLong(multiplier);
+        AuctionProtocol.writeStrings(out, bidders.subList(shardStart[shard], shardStart[shard + 1]));
+        AuctionProtocol.writeStrings(out, objects);
+        for (long price: prices) {
+            out.writeLong(price);
+        }
+        out.flush();
+    }
+
+    private void sendRound(Connection connection, int shard, long epsilon, List<Integer> changedObjects,
+                           int[] objectOfBidder) throws IOException {
+        DataOutputStream out = connection.out;
+        out.writeByte(AuctionProtocol.MSG_ROUND);
+        out.writeLong(epsilon);
+        out.writeInt(changedObjects.size());
+        for (int object: changedObjects) {
+            out.writeInt(object);
+            out.writeLong(prices[object]);
+        }
+        int numRequests = 0;
+        for (int b = shardStart[shard]; b < shardStart[shard + 1]; b++) {
+            if (objectOfBidder[b] == UNASSIGNED) {
+                numRequests++;
+            }
+        }
+        out.writeInt(numRequests);
+        for (int b = shardStart[shard]; b < shardStart[shard + 1]; b++) {
+            if (objectOfBidder[b] == UNASSIGNED) {
+                out.writeInt(b - shardStart[shard]);
+            }
+        }
+        out.flush();
+    }
+
+    /*
+     * Reads the bids of one shard. Ties between bids for the same object go to the lower bidder index
+     * so the outcome does not depend on the order in which shards answer.
+     */
+    private void readBids(Connection connection, int shard, long[] bestBid, int[] bestBidder,
+                          List<Integer> biddingObjects) throws IOException {
+        DataInputStream in = connection.in;
+        int numBids = in.readInt();
+        for (int k = 0; k < numBids; k++) {
+            int bidder = shardStart[shard] + in.readInt();
+            int object = in.readInt();
+            long bid = in.readLong();
+            if (bestBidder[object] == -1) {
+                biddingObjects.add(object);
+                bestBid[object] = bid;
+                bestBidder[object] = bidder;
+            } else if (bid > bestBid[object] || (bid == bestBid[object] && bidder < bestBidder[object])) {
+                bestBid[object] = bid;
+                bestBidder[object] = bidder;
+            }
+        }
+    }
+
+    private double buildResult(int[] objectOfBidder) {
+        int[] driverOfAddress = new int[addresses.size()];
+        double[] scores = new double[addresses.size()];
+        Arrays.fill(driverOfAddress, AssignmentResult.UNASSIGNED);
+        double totalScore = 0;
+        for (int b = 0; b < objectOfBidder.length; b++) {
+            int address = biddersAreAddresses ? b : objectOfBidder[b];
+            int driver = biddersAreAddresses ? objectOfBidder[b] : b;
+            driverOfAddress[address] = driver;
+            scores[address] = ScoreUtils.suitabilityScore(addresses.get(address), names.get(driver));
+            totalScore += scores[address];
+        }
+        result = new AssignmentResult(addresses, names, driverOfAddress, scores, totalScore, objectOfBidder.length);
+        return totalScore;
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already failed, nothing more to release
+        }
+    }
+
+    private static class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(Socket socket, int timeoutMillis) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(timeoutMillis);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void close() {
+            AuctionCoordinator.close(socket);
+        }
+    }
+}
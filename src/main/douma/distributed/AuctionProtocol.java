@@ -0,0 +1,50 @@
+package douma.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message layout shared by the auction coordinator and its workers. Every message starts with a one
+ * byte type followed by its fields written with DataOutputStream.
+ *
+ * INIT:     shard id, bidders-are-addresses flag, benefit multiplier, bidder strings, object strings,
+ *           current price of every object
+ * ROUND:    bid increment epsilon, number of price updates, (object, price) per update, number of bid
+ *           requests, local bidder index per request
+ * SHUTDOWN: no fields
+ *
+ * A worker answers INIT with the largest benefit of its shard, and each ROUND with the number of bids
+ * followed by (local bidder, object, bid) per bid.
+ */
+final class AuctionProtocol {
+    static final byte MSG_INIT = 1;
+    static final byte MSG_ROUND = 2;
+    static final byte MSG_SHUTDOWN = 3;
+
+    /**
+     * Scores are multiples of 0.25, so multiplying by this factor makes every benefit an integer
+     */
+    static final long SCORE_SCALE = 4;
+
+    private AuctionProtocol() {
+    }
+
+    static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string: strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,135 @@
+package douma.distributed;
+
+import douma.util.ScoreUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Worker process of the sharded auction. It connects to an {@link AuctionCoordinator}, receives one
+ * shard of bidders together with every object, and then answers bid requests for its unassigned
+ * bidders until the coordinator shuts it down. Only the benefits of its own shard are held in memory.
+ *
+ * A worker keeps no state the coordinator cannot resend, so a worker that dies can be replaced by
+ * starting a new one against the same coordinator.
+ */
+public class AuctionWorker implements Runnable {
+    private final String host;
+    private final int port;
+    private long[][] benefits;
+    private long[] prices;
+
+    public AuctionWorker(final String host, final int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args == null || args.length != 2) {
+            throw new IllegalArgumentException("Usage: AuctionWorker <coordinator host> <coordinator port>");
+        }
+        new AuctionWorker(args[0], Integer.parseInt(args[1])).serve();
+    }
+
+    @Override
+    public void run() {
+        try {
+            serve();
+        } catch (IOException e) {
+            throw new IllegalStateException("Lost connection to coordinator " + host + ":" + port, e);
+        }
+    }
+
+    /**
+     * Connects to the coordinator and handles messages until told to shut down
+     */
+    public void serve() throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                byte type = in.readByte();
+                if (type == AuctionProtocol.MSG_INIT) {
+                    initialize(in, out);
+                } else if (type == AuctionProtocol.MSG_ROUND) {
+                    bid(in, out);
+                } else if (type == AuctionProtocol.MSG_SHUTDOWN) {
+                    return;
+                } else {
+                    throw new IOException("Unknown message type " + type);
+                }
+            }
+        }
+    }
+
+    private void initialize(DataInputStream in, DataOutputStream out) throws IOException {
+        in.readInt(); // shard id, only of interest to the coordinator
+        boolean biddersAreAddresses = in.readBoolean();
+        long multiplier = in.readLong();
+        List<String> bidders = AuctionProtocol.readStrings(in);
+        List<String> objects = AuctionProtocol.readStrings(in);
+
+        benefits = new long[bidders.size()][objects.size()];
+        long maxBenefit = 0;
+        for (int i = 0; i < bidders.size(); i++) {
+            for (int j = 0; j < objects.size(); j++) {
+                double score = biddersAreAddresses
+                        ? ScoreUtils.suitabilityScore(bidders.get(i), objects.get(j))
+                        : ScoreUtils.suitabilityScore(objects.get(j), bidders.get(i));
+                benefits[i][j] = Math.round(score * AuctionProtocol.SCORE_SCALE) * multiplier;
+                maxBenefit = Math.max(maxBenefit, benefits[i][j]);
+            }
+        }
+        prices = new long[objects.size()];
+        for (int j = 0; j < prices.length; j++) {
+            prices[j] = in.readLong();
+        }
+        out.writeLong(maxBenefit);
+        out.flush();
+    }
+
+    /*
+     * Each requested bidder bids for the object with the highest value (benefit minus price). The bid
+     * raises the price by the margin over the second best object plus the epsilon of the current
+     * phase.
+     */
+    private void bid(DataInputStream in, DataOutputStream out) throws IOException {
+        long epsilon = in.readLong();
+        int numUpdates = in.readInt();
+        for (int k = 0; k < numUpdates; k++) {
+            int object = in.readInt();
+            prices[object] = in.readLong();
+        }
+
+        int numRequests = in.readInt();
+        out.writeInt(numRequests);
+        for (int k = 0; k < numRequests; k++) {
+            int bidder = in.readInt();
+            long[] row = benefits[bidder];
+            int bestObject = -1;
+            long bestValue = Long.MIN_VALUE;
+            long secondValue = Long.MIN_VALUE;
+            for (int j = 0; j < row.length; j++) {
+                long value = row[j] - prices[j];
+                if (value > bestValue) {
+                    secondValue = bestValue;
+                    bestValue = value;
+                    bestObject = j;
+                } else if (value > secondValue) {
+                    secondValue = value;
+                }
+            }
+            long increment = secondValue == Long.MIN_VALUE ? epsilon : bestValue - secondValue + epsilon;
+            out.writeInt(bidder);
+            out.writeInt(bestObject);
+            out.writeLong(prices[bestObject] + increment);
+        }
+        out.flush();
+    }
+}
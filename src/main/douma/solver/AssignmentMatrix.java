@@ -4,7 +4,7 @@ import douma.util.ArrayUtils;
 import douma.util.Pair;
 import douma.util.ScoreUtils;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static douma.util.ArrayUtils.*;
@@ -16,56 +16,136 @@ import static douma.util.ArrayUtils.*;
  */
 public class AssignmentMatrix {
     private double[][] costMatrix;
+    private double[] rowDuals;
+    private double[] colDuals;
+    private int[] starredColumnOfRow;
     private int[][] markedZeroes;
     private boolean[] rowCoverings;
     private boolean[] colCoverings;
+    private double[] rowOffsets;
+    private double[] colOffsets;
+    private int[] firstUncoveredZero;
+    private int[] columnsUncoveredInPass;
+    private double[] stripeMinima;
     private List<String> addresses;
     private List<String> names;
+    private int[] pathRows;
+    private int[] pathCols;
     private boolean isTransposed;
+    private int numRows;
+    private int numCols;
+    private final RowStripeExecutor executor;
+    private final SolverWorkspace workspace;
+    private int numStripes;
 
     public AssignmentMatrix(final List<String> addresses, final List<String> names) {
+        this(addresses, names, null);
+    }
+
+    /**
+     * Creates a matrix whose per-iteration passes (uncovered zero search, minimum scan and dual
+     * update) are split into row stripes on the given executor. The stripes only read shared state
+     * or write their own rows, and the stripe results are combined in row order, so the assignments
+     * are identical to those of a single threaded solve.
+     *
+     * @param executor pool to run the stripes on, null to run single threaded
+     */
+    public AssignmentMatrix(final List<String> addresses, final List<String> names, final RowStripeExecutor executor) {
+        this(addresses, names, null, executor, null);
+    }
+
+    /**
+     * Creates a matrix whose arrays are taken from the given workspace instead of being allocated.
+     * The matrix is only valid until the workspace is used for another matrix.
+     *
+     * @param scores scores that were already computed, indexed [address][driver], null to compute them
+     * @param executor pool to run the stripes on, null to run single threaded
+     * @param workspace arrays to reuse, null to allocate new ones
+     */
+    AssignmentMatrix(final List<String> addresses, final List<String> names, final double[][] scores,
+                     final RowStripeExecutor executor, final SolverWorkspace workspace) {
         this.addresses = addresses;
         this.names = names;
-        initializeFields(addresses, names);
+        this.executor = executor;
+        this.workspace = workspace == null ? new SolverWorkspace() : workspace;
+        if (scores == null) {
+            initializeFields(addresses, names);
+        } else {
+            initializeFields(scores);
+        }
     }
 
     /*
      * The cost matrix, (costMatrix) is initialized so that the number of rows is less than or
      * equal to the number of columns. We initialize the matrix with the negative values returned
      * by ScoreUtils.suitabilityScore because the Munkres Assignment algorithm returns a minimum and
-     * we require a maximum.
+     * we require a maximum. Every change to the cost matrix subtracts a value from whole rows or
+     * columns, and those values are summed in rowDuals and colDuals, so the original cost of an entry
+     * is always rowDuals[i] + colDuals[j] + costMatrix[i][j]. Starred entries have a cost of 0, so
+     * the result is scored without keeping a copy of the scores.
      *
      * The markedZeroes matrix is initialized to contain zeroes.
      *
      * The vectors rowCoverings and colCoverings are initialized so that all entries are false.
+     *
+     * All of these are taken from the workspace, whose arrays may be larger than numRows x numCols;
+     * only that region is used.
      */
     void initializeFields(final List<String> addresses, final List<String> names) {
-        costMatrix = new double[addresses.size()][names.size()];
+        reserveWorkspace();
         for (int i = 0; i < addresses.size(); i++) {
             for (int j = 0; j < names.size(); j++) {
-                costMatrix[i][j] = -1 * ScoreUtils.suitabilityScore(addresses.get(i), names.get(j));
+                double cost = -1 * ScoreUtils.suitabilityScore(addresses.get(i), names.get(j));
+                if (isTransposed) {
+                    costMatrix[j][i] = cost;
+                } else {
+                    costMatrix[i][j] = cost;
+                }
             }
         }
+    }
 
-        if (names.size() < addresses.size()) {
-            isTransposed = true;
-            costMatrix = ArrayUtils.transpose(costMatrix);
-            markedZeroes = new int[names.size()][addresses.size()]; // initialize to all zeroes
-            rowCoverings = new boolean[names.size()];
-            colCoverings = new boolean[addresses.size()];
-        } else {
-            isTransposed = false;
-            markedZeroes = new int[addresses.size()][names.size()]; // initialize to all zeroes
-            rowCoverings = new boolean[addresses.size()];
-            colCoverings = new boolean[names.size()];
+    void initializeFields(final double[][] scores) {
+        reserveWorkspace();
+        for (int i = 0; i < addresses.size(); i++) {
+            for (int j = 0; j < names.size(); j++) {
+                if (isTransposed) {
+                    costMatrix[j][i] = -1 * scores[i][j];
+                } else {
+                    costMatrix[i][j] = -1 * scores[i][j];
+                }
+            }
         }
     }
 
+    private void reserveWorkspace() {
+        isTransposed = names.size() < addresses.size();
+        numRows = isTransposed ? names.size() : addresses.size();
+        numCols = isTransposed ? addresses.size() : names.size();
+        numStripes = executor == null ? 1 : executor.numStripes(numRows, numCols);
+        workspace.reserve(numRows, numCols, numStripes);
+
+        costMatrix = workspace.costs;
+        rowDuals = workspace.rowDuals;
+        colDuals = workspace.colDuals;
+        markedZeroes = workspace.markedZeroes;
+        rowCoverings = workspace.rowCoverings;
+        colCoverings = workspace.colCoverings;
+        rowOffsets = workspace.rowOffsets;
+        colOffsets = workspace.colOffsets;
+        starredColumnOfRow = workspace.starredColumnOfRow;
+        firstUncoveredZero = workspace.firstUncoveredZero;
+        columnsUncoveredInPass = workspace.columnsUncoveredInPass;
+        pathRows = workspace.pathRows;
+        pathCols = workspace.pathCols;
+        stripeMinima = workspace.stripeMinima;
+    }
+
     /**
      * Returns the number of assignments necessary for a solution to the assignment problem
      */
     public int getNumAssignmentsNecessaryForSolution() {
-        return costMatrix.length;
+        return numRows;
     }
 
     /**
@@ -74,7 +154,7 @@ public class AssignmentMatrix {
      * Precondition: costMatrix must have been initialized
      */
     public void zeroizeRowMinimumInCostMatrix() {
-        costMatrix = ArrayUtils.zeroizeRowMinimumInMatrix(costMatrix);
+        costMatrix = ArrayUtils.zeroizeRowMinimumInMatrix(costMatrix, numRows, numCols, rowDuals);
     }
 
     /**
@@ -82,15 +162,20 @@ public class AssignmentMatrix {
      * the markedZeroes matrix
      */
     public void markZeroesWithStars() {
-        markedZeroes = ArrayUtils.markZeroesWithStars(costMatrix, markedZeroes);
+        // colCoverings serves as the scratch column set; it is cleared again before the columns are covered
+        markedZeroes = ArrayUtils.markZeroesWithStars(costMatrix, markedZeroes, colCoverings, numRows, numCols);
+        Arrays.fill(colCoverings, 0, numCols, false);
+        for (int i = 0; i < numRows; i++) {
+            starredColumnOfRow[i] = ArrayUtils.findIndexOf(markedZeroes[i], STAR, numCols);
+        }
     }
 
     /**
      * Marks columns with starred zeroes as covered
      */
     public int coverColumnsWithStarredZero() {
-        colCoverings = ArrayUtils.coverColumnsWithStarredZeroes(markedZeroes, colCoverings);
-        return ArrayUtils.numTrueValues(colCoverings);
+        colCoverings = ArrayUtils.coverColumnsWithStarredZeroes(markedZeroes, colCoverings, numRows, numCols);
+        return ArrayUtils.numTrueValues(colCoverings, numCols);
     }
 
     /**
@@ -103,67 +188,98 @@ public class AssignmentMatrix {
         // done will be set to true when either all zeroes are covered or there is an uncovered zero
         // with no starred zeroes in its row
         while (!done) {
-            for (int i = 0; i < costMatrix.length; i++) {
-                for (int j = 0; j < costMatrix[0].length; j++) {
-                    if (costMatrix[i][j] == 0 && !rowCoverings[i] && !colCoverings[j]) {
-                        markedZeroes[i][j] = ArrayUtils.PRIME;
-                        if (ArrayUtils.hasStars(markedZeroes[i])) {
-                            int indexOfStar = ArrayUtils.findIndexOf(markedZeroes[i], STAR);
-                            rowCoverings[i] = true;
-                            colCoverings[indexOfStar] = false;
-                        } else {
-                            rowIndexOfPrime = i;
-                            colIndexOfPrime = j;
-                            done = true;
-                            break;
-                        }
+            // Rows are examined in order; a row is primed at its first uncovered zero. Covering a row
+            // only ever uncovers columns during a pass, so the first uncovered zero of each row is
+            // found up front from the coverings at the start of the pass and only the columns
+            // uncovered since then need to be checked again for each row.
+            findFirstUncoveredZeroes();
+            int numUncoveredInPass = 0;
+            for (int i = 0; i < numRows; i++) {
+                if (rowCoverings[i]) {
+                    continue;
+                }
+                int j = firstUncoveredZero[i];
+                for (int k = 0; k < numUncoveredInPass; k++) {
+                    int col = columnsUncoveredInPass[k];
+                    if ((j == -1 || col < j) && costMatrix[i][col] == 0) {
+                        j = col;
                     }
                 }
+                if (j == -1) {
+                    continue;
+                }
+
+                markedZeroes[i][j] = ArrayUtils.PRIME;
+                int indexOfStar = starredColumnOfRow[i];
+                if (indexOfStar != -1) {
+                    rowCoverings[i] = true;
+                    colCoverings[indexOfStar] = false;
+                    columnsUncoveredInPass[numUncoveredInPass++] = indexOfStar;
+                } else {
+                    rowIndexOfPrime = i;
+                    colIndexOfPrime = j;
+                    done = true;
+                }
             }
 
             if (done) {
-                // We have primed zero in row without starred zero
-                List<Pair<Integer, Integer>> sequenceOfPrimedAndStarredZeroes = new ArrayList<>();
-                sequenceOfPrimedAndStarredZeroes.add(new Pair<>(rowIndexOfPrime, colIndexOfPrime));
-                int[] column = ArrayUtils.getColumnFromArray(markedZeroes, colIndexOfPrime);
-                rowIndexOfPrime = ArrayUtils.findIndexOf(column, STAR);
+                // We have primed zero in row without starred zero. The sequence of alternating
+                // primed and starred zeroes is kept in pathRows and pathCols.
+                int pathLength = 0;
+                pathRows[pathLength] = rowIndexOfPrime;
+                pathCols[pathLength++] = colIndexOfPrime;
+                rowIndexOfPrime = findStarInColumn(colIndexOfPrime);
                 while (rowIndexOfPrime != -1) {
-                    sequenceOfPrimedAndStarredZeroes.add(new Pair<>(rowIndexOfPrime, colIndexOfPrime));
-                    colIndexOfPrime = ArrayUtils.findIndexOf(markedZeroes[rowIndexOfPrime], PRIME);
-                    sequenceOfPrimedAndStarredZeroes.add(new Pair<>(rowIndexOfPrime, colIndexOfPrime));
-                    column = ArrayUtils.getColumnFromArray(markedZeroes, colIndexOfPrime);
-                    rowIndexOfPrime = ArrayUtils.findIndexOf(column, STAR);
+                    pathRows[pathLength] = rowIndexOfPrime;
+                    pathCols[pathLength++] = colIndexOfPrime;
+                    colIndexOfPrime = ArrayUtils.findIndexOf(markedZeroes[rowIndexOfPrime], PRIME, numCols);
+                    pathRows[pathLength] = rowIndexOfPrime;
+                    pathCols[pathLength++] = colIndexOfPrime;
+                    rowIndexOfPrime = findStarInColumn(colIndexOfPrime);
                 }
-                for (Pair<Integer, Integer> index: sequenceOfPrimedAndStarredZeroes) {
-                    if (markedZeroes[index.first][index.second] == STAR) {
-                        markedZeroes[index.first][index.second] = 0;
-                    } else if (markedZeroes[index.first][index.second] == PRIME) {
-                        markedZeroes[index.first][index.second] = STAR;
+                for (int k = 0; k < pathLength; k++) {
+                    int row = pathRows[k];
+                    int col = pathCols[k];
+                    if (markedZeroes[row][col] == STAR) {
+                        markedZeroes[row][col] = 0;
+                        if (starredColumnOfRow[row] == col) {
+                            starredColumnOfRow[row] = -1;
+                        }
+                    } else if (markedZeroes[row][col] == PRIME) {
+                        markedZeroes[row][col] = STAR;
+                        starredColumnOfRow[row] = col;
                     }
                 }
-                for (int i = 0; i < markedZeroes.length; i++) {
-                    for (int j = 0; j < markedZeroes[0].length; j++) {
-                        if (markedZeroes[i][j] == PRIME) {
-                            markedZeroes[i][j] = 0;
+                forEachStripe(numRows, (stripe, fromRow, toRow) -> {
+                    for (int i = fromRow; i < toRow; i++) {
+                        int[] row = markedZeroes[i];
+                        for (int j = 0; j < numCols; j++) {
+                            if (row[j] == PRIME) {
+                                row[j] = 0;
+                            }
                         }
                     }
-                }
+                });
                 // Uncover rows and columns
-                rowCoverings = new boolean[costMatrix.length];
-                colCoverings = new boolean[costMatrix[0].length];
+                Arrays.fill(rowCoverings, 0, numRows, false);
+                Arrays.fill(colCoverings, 0, numCols, false);
             } else {
                 // add minimum uncovered value to each covered row of costMatrix and subtract
                 // minimum uncovered value from each uncovered column
                 double minimum = findMinimumUncoveredValue();
-                for (int i = 0; i < rowCoverings.length; i++) {
-                    if (rowCoverings[i]) {
-                        costMatrix = ArrayUtils.addToRow(costMatrix, i, minimum);
-                    }
+                for (int i = 0; i < numRows; i++) {
+                    rowOffsets[i] = rowCoverings[i] ? minimum : 0;
                 }
-                for (int i = 0; i < colCoverings.length; i++) {
-                    if (!colCoverings[i]) {
-                        costMatrix = ArrayUtils.subtractFromColumn(costMatrix, i, minimum);
-                    }
+                for (int j = 0; j < numCols; j++) {
+                    colOffsets[j] = colCoverings[j] ? 0 : -minimum;
+                }
+                forEachStripe(numRows, (stripe, fromRow, toRow) ->
+                        ArrayUtils.addRowAndColumnOffsets(costMatrix, rowOffsets, colOffsets, fromRow, toRow, numCols));
+                for (int i = 0; i < numRows; i++) {
+                    rowDuals[i] -= rowOffsets[i];
+                }
+                for (int j = 0; j < numCols; j++) {
+                    colDuals[j] -= colOffsets[j];
                 }
             }
         }
@@ -173,27 +289,122 @@ public class AssignmentMatrix {
      * Return list of assignments of addresses to drivers
      */
     public List<Pair<String, String>> getAssignments() {
-        List<Pair<String, String>> retList = new ArrayList<>();
-        for (int i = 0; i < markedZeroes.length; i++) {
-            for (int j = 0; j < markedZeroes[0].length; j++) {
-                if (markedZeroes[i][j] == STAR) {
-                    retList.add(isTransposed ? new Pair<>(addresses.get(j), names.get(i)) : new Pair<>(addresses.get(i), names.get(j)));
-                }
+        return getResult().getAssignments();
+    }
+
+    /**
+     * Returns the starred zeroes as an index based result. This takes time proportional to the
+     * number of addresses plus the number of drivers since the starred column of each row is tracked
+     * while the algorithm runs and the score of a starred entry is the negated sum of its row and
+     * column duals.
+     */
+    public AssignmentResult getResult() {
+        int[] driverOfAddress = new int[addresses.size()];
+        double[] scores = new double[addresses.size()];
+        Arrays.fill(driverOfAddress, AssignmentResult.UNASSIGNED);
+        double totalScore = 0;
+        int numAssignments = 0;
+        for (int i = 0; i < numRows; i++) {
+            int j = starredColumnOfRow[i];
+            if (j == -1) {
+                continue;
             }
+            int address = isTransposed ? j : i;
+            driverOfAddress[address] = isTransposed ? i : j;
+            // 0 - x rather than -x so an entry of 0 is not stored as -0.0
+            scores[address] = 0 - (rowDuals[i] + colDuals[j]);
+            totalScore += scores[address];
+            numAssignments++;
+        }
+        return new AssignmentResult(addresses, names, driverOfAddress, scores, totalScore, numAssignments);
+    }
+
+    /**
+     * Fills in an optimal solution of the dual of the maximization problem once the algorithm is
+     * done: non-negative values with addressDual[a] + nameDual[d] >= score(a, d) for every pair,
+     * equality for assigned pairs, and 0 for unassigned addresses and drivers.
+     *
+     * The duals of the cost minimization are the summed row and column offsets, negated for the
+     * maximization. Columns left without a star were uncovered in every dual update and share the
+     * smallest dual, which is shifted to 0.
+     *
+     * @param addressDuals one entry per address
+     * @param nameDuals one entry per driver
+     */
+    void getDuals(double[] addressDuals, double[] nameDuals) {
+        double[] rowResult = isTransposed ? nameDuals : addressDuals;
+        double[] colResult = isTransposed ? addressDuals : nameDuals;
+        double minimum = Double.MAX_VALUE;
+        for (int j = 0; j < numCols; j++) {
+            minimum = Math.min(minimum, -colDuals[j]);
+        }
+        for (int i = 0; i < numRows; i++) {
+            rowResult[i] = -rowDuals[i] + minimum;
+        }
+        for (int j = 0; j < numCols; j++) {
+            colResult[j] = -colDuals[j] - minimum;
         }
-        return retList;
     }
 
+    /*
+     * colOffsets doubles as the column mask here since it is refilled before the dual update
+     */
     private double findMinimumUncoveredValue() {
+        for (int j = 0; j < numCols; j++) {
+            colOffsets[j] = colCoverings[j] ? Double.POSITIVE_INFINITY : 0;
+        }
+        forEachStripe(numRows, (stripe, fromRow, toRow) ->
+                stripeMinima[stripe] = ArrayUtils.minUncovered(costMatrix, rowCoverings, colOffsets, fromRow, toRow, numCols));
         double minimum = Double.MAX_VALUE;
-        for (int i = 0; i < costMatrix.length; i++) {
-            for (int j = 0; j < costMatrix[0].length; j++) {
-                if (!rowCoverings[i] && !colCoverings[j] && costMatrix[i][j] < minimum) {
-                    minimum = costMatrix[i][j];
+        for (int stripe = 0; stripe < numStripes; stripe++) {
+            minimum = Math.min(minimum, stripeMinima[stripe]);
+        }
+        return minimum;
+    }
+
+    /*
+     * Returns the row of the starred zero in the given column, -1 if there is none
+     */
+    private int findStarInColumn(int col) {
+        for (int i = 0; i < numRows; i++) {
+            if (markedZeroes[i][col] == STAR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Stores the column of the first zero of each uncovered row that lies in an uncovered column,
+     * -1 if there is none
+     */
+    private void findFirstUncoveredZeroes() {
+        forEachStripe(numRows, (stripe, fromRow, toRow) -> {
+            for (int i = fromRow; i < toRow; i++) {
+                firstUncoveredZero[i] = -1;
+                if (rowCoverings[i]) {
+                    continue;
+                }
+                double[] row = costMatrix[i];
+                for (int j = 0; j < numCols; j++) {
+                    if (row[j] == 0 && !colCoverings[j]) {
+                        firstUncoveredZero[i] = j;
+                        break;
+                    }
                 }
             }
+        });
+    }
+
+    /*
+     * Runs the task over all rows, split into stripes when an executor was supplied
+     */
+    private void forEachStripe(int numRows, RowStripeExecutor.StripeTask task) {
+        if (executor == null) {
+            task.run(0, 0, numRows);
+        } else {
+            executor.forEachStripe(numRows, numStripes, task);
         }
-        return minimum;
     }
 
     // Getters for testing
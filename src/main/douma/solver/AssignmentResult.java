@@ -0,0 +1,91 @@
+package douma.solver;
+
+import douma.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of an assignment solve in index form. Entry <code>i</code> of the driver mapping holds the
+ * index of the driver assigned to address <code>i</code>, or -1 if the address was not assigned, and
+ * entry <code>i</code> of the score array holds the suitability score of that assignment.
+ *
+ * The arrays are handed out as-is to avoid copying and must not be modified by callers. Address and
+ * driver name pairs are only built when {@link #getAssignments()} is first called.
+ */
+public class AssignmentResult {
+    public static final int UNASSIGNED = -1;
+
+    private final List<String> addresses;
+    private final List<String> names;
+    private final int[] driverOfAddress;
+    private final double[] scores;
+    private final double totalScore;
+    private final int numAssignments;
+    private List<Pair<String, String>> assignments;
+
+    /**
+     * @param addresses addresses indexed by the driver mapping
+     * @param names driver names the mapping refers to
+     * @param driverOfAddress driver index per address, UNASSIGNED if none
+     * @param scores suitability score per address, 0 if unassigned
+     * @param totalScore sum of scores
+     * @param numAssignments number of assigned addresses
+     */
+    public AssignmentResult(final List<String> addresses, final List<String> names, final int[] driverOfAddress,
+                            final double[] scores, final double totalScore, final int numAssignments) {
+        this.addresses = addresses;
+        this.names = names;
+        this.driverOfAddress = driverOfAddress;
+        this.scores = scores;
+        this.totalScore = totalScore;
+        this.numAssignments = numAssignments;
+        this.assignments = null;
+    }
+
+    /**
+     * Returns, for each address index, the index of the assigned driver or UNASSIGNED
+     */
+    public int[] getDriverOfAddress() {
+        return driverOfAddress;
+    }
+
+    /**
+     * Returns, for each address index, the suitability score of its assignment (0 if unassigned)
+     */
+    public double[] getScores() {
+        return scores;
+    }
+
+    /**
+     * Returns the sum of the suitability scores of all assignments
+     */
+    public double getTotalScore() {
+        return totalScore;
+    }
+
+    /**
+     * Returns the number of addresses that were assigned a driver
+     */
+    public int getNumAssignments() {
+        return numAssignments;
+    }
+
+    /**
+     * Returns the assignments as (address, driver name) pairs ordered by address index. The list is
+     * built on the first call and shared afterwards.
+     */
+    public List<Pair<String, String>> getAssignments() {
+        if (assignments == null) {
+            List<Pair<String, String>> retList = new ArrayList<>(numAssignments);
+            for (int i = 0; i < driverOfAddress.length; i++) {
+                if (driverOfAddress[i] != UNASSIGNED) {
+                    retList.add(new Pair<>(addresses.get(i), names.get(driverOfAddress[i])));
+                }
+            }
+            assignments = Collections.unmodifiableList(retList);
+        }
+        return assignments;
+    }
+}
@@ -1,11 +1,14 @@
 package douma.solver;
 
 import douma.util.Pair;
-import douma.util.ScoreUtils;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Contains methods to assign deliveries to drivers
@@ -13,11 +16,20 @@ import java.util.List;
 public class AssignmentSolver {
     private final List<String> addresses;
     private final List<String> names;
-    private List<Pair<String, String>> assignments;
+    private AssignmentResult result;
     private AssignmentMatrix assignmentMatrix;
+    private final RowStripeExecutor executor;
+    private SolverWorkspace workspace;
+    private List<Pair<String, String>> pinnedAssignments;
+    private Reduction reduction;
+    private boolean presolve;
+    private List<PresolveStep> presolveSteps;
+    private double[][] remainingScores;
 
     private static enum STATE {
         INIT,
+        PRESOLVE,
+        BUILD_MATRIX,
         ZEROIZE_MINIMA,
         STAR_ZEROES,
         COVER_COLUMNS,
@@ -26,9 +38,64 @@ public class AssignmentSolver {
     }
 
     public AssignmentSolver(final List<String> addresses, final List<String> names) {
+        this(addresses, names, null);
+    }
+
+    /**
+     * Creates a solver whose matrix passes are split into row stripes on the given executor. The
+     * assignments are the same as those found without an executor.
+     *
+     * @param executor pool to run the stripes on, null to run single threaded
+     */
+    public AssignmentSolver(final List<String> addresses, final List<String> names, final RowStripeExecutor executor) {
         this.addresses = new ArrayList<>(addresses);
         this.names = new ArrayList<>(names);
-        this.assignments = null;
+        this.executor = executor;
+        this.pinnedAssignments = new ArrayList<>();
+        this.presolveSteps = new ArrayList<>();
+        this.result = null;
+    }
+
+    /**
+     * Fixes (address, driver name) pairs that must be part of the solution. The pinned addresses
+     * and drivers are removed before the cost matrix is built, so only the remaining addresses and
+     * drivers are solved for. When an address or name occurs more than once, each pin takes the
+     * first occurrence not taken by an earlier pin.
+     *
+     * @param pinnedAssignments pairs to keep fixed, empty to solve the whole problem
+     */
+    public void setPinnedAssignments(final List<Pair<String, String>> pinnedAssignments) {
+        this.pinnedAssignments = new ArrayList<>(pinnedAssignments);
+    }
+
+    /**
+     * Makes the solver take its matrices from the given workspace instead of allocating them for
+     * each solve. The workspace may be shared by solvers that run one after the other on the same
+     * thread, but not by solvers running at the same time.
+     *
+     * @param workspace arrays to reuse, null to allocate new ones for each solve
+     */
+    public void setWorkspace(final SolverWorkspace workspace) {
+        this.workspace = workspace;
+    }
+
+    /**
+     * Enables a presolve pass that fixes address/driver pairs which belong to an optimal solution
+     * and drops addresses or drivers that can be left out of one, before the cost matrix is built.
+     * The total score is the same with or without it. See Presolver for the rules applied.
+     *
+     * @param presolve true to run the presolve, false (the default) to solve the whole problem
+     */
+    public void setPresolve(boolean presolve) {
+        this.presolve = presolve;
+    }
+
+    /**
+     * Returns the reductions made by the presolve during the last call to solve
+     * @return an empty list if the presolve is disabled or found nothing
+     */
+    public List<PresolveStep> getPresolveSteps() {
+        return presolveSteps;
     }
 
     /**
@@ -44,6 +111,12 @@ public class AssignmentSolver {
         while (state != STATE.DONE) {
             switch (state) {
                 case INIT:
+                    state = initializeReduction();
+                    break;
+                case PRESOLVE:
+                    state = runPresolve();
+                    break;
+                case BUILD_MATRIX:
                     state = initializeMatrix();
                     break;
                 case ZEROIZE_MINIMA:
@@ -63,26 +136,87 @@ public class AssignmentSolver {
             }
         }
 
-        assignments = assignmentMatrix.getAssignments();
-        double totalScore = 0;
-        for (Pair<String, String> pair: assignments) {
-            totalScore += ScoreUtils.suitabilityScore(pair.first, pair.second);
-        }
-        return totalScore;
+        AssignmentResult remaining = assignmentMatrix == null ? null : assignmentMatrix.getResult();
+        result = reduction == null ? remaining : reduction.merge(remaining);
+        return result.getTotalScore();
     }
 
     /**
      * Returns a list of the assignments determined by the algorithm
-     * @return null if called
+     * @return null if called before solve
      */
     public List<Pair<String, String>> getAssignments() {
-        return assignments;
+        return result == null ? null : result.getAssignments();
+    }
+
+    /**
+     * Returns the assignments determined by the algorithm in index form
+     * @return null if called before solve
+     */
+    public AssignmentResult getResult() {
+        return result;
+    }
+
+    /**
+     * Fills in the dual values of the last solve, see AssignmentMatrix.getDuals
+     *
+     * @throws IllegalStateException if the solve used pinned assignments or the presolve, since the
+     *         removed addresses and drivers have no duals
+     */
+    void getDuals(double[] addressDuals, double[] nameDuals) {
+        if (!pinnedAssignments.isEmpty() || presolve) {
+            throw new IllegalStateException("Duals are only available for a solve of the whole problem");
+        }
+        if (assignmentMatrix == null) {
+            Arrays.fill(addressDuals, 0);
+            Arrays.fill(nameDuals, 0);
+            return;
+        }
+        assignmentMatrix.getDuals(addressDuals, nameDuals);
     }
 
     // state transition functions; package-private for testing
 
+    STATE initializeReduction() {
+        reduction = null;
+        remainingScores = null;
+        presolveSteps = new ArrayList<>();
+        if (!pinnedAssignments.isEmpty() || presolve || addresses.isEmpty() || names.isEmpty()) {
+            reduction = new Reduction(addresses, names);
+            if (!pinnedAssignments.isEmpty()) {
+                Map<String, ArrayDeque<Integer>> addressIndices = indicesByValue(addresses);
+                Map<String, ArrayDeque<Integer>> nameIndices = indicesByValue(names);
+                for (Pair<String, String> pair: pinnedAssignments) {
+                    Integer address = pollIndex(addressIndices, pair.first);
+                    if (address == null) {
+                        throw new IllegalArgumentException("Pinned address " + pair.first + " is not an unpinned address");
+                    }
+                    Integer name = pollIndex(nameIndices, pair.second);
+                    if (name == null) {
+                        throw new IllegalArgumentException("Pinned driver " + pair.second + " is not an unpinned driver");
+                    }
+                    reduction.fix(address, name);
+                }
+            }
+        }
+        return presolve ? STATE.PRESOLVE : STATE.BUILD_MATRIX;
+    }
+
+    STATE runPresolve() {
+        Presolver presolver = new Presolver(addresses, names, reduction);
+        remainingScores = presolver.run();
+        presolveSteps = presolver.getSteps();
+        return STATE.BUILD_MATRIX;
+    }
+
     STATE initializeMatrix() {
-        assignmentMatrix = new AssignmentMatrix(addresses, names);
+        List<String> remainingAddresses = reduction == null ? addresses : reduction.getRemainingAddresses();
+        List<String> remainingNames = reduction == null ? names : reduction.getRemainingNames();
+        if (remainingAddresses.isEmpty() || remainingNames.isEmpty()) {
+            assignmentMatrix = null;
+            return STATE.DONE;
+        }
+        assignmentMatrix = new AssignmentMatrix(remainingAddresses, remainingNames, remainingScores, executor, workspace);
         return STATE.ZEROIZE_MINIMA;
     }
 
@@ -109,4 +243,21 @@ public class AssignmentSolver {
         assignmentMatrix.increaseStarredZeroes();
         return STATE.COVER_COLUMNS;
     }
+
+    /*
+     * Indices of each distinct value in increasing order, so that polling a value yields its first
+     * occurrence not pinned yet
+     */
+    private static Map<String, ArrayDeque<Integer>> indicesByValue(List<String> values) {
+        Map<String, ArrayDeque<Integer>> indices = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            indices.computeIfAbsent(values.get(i), value -> new ArrayDeque<>()).add(i);
+        }
+        return indices;
+    }
+
+    private static Integer pollIndex(Map<String, ArrayDeque<Integer>> indices, String value) {
+        ArrayDeque<Integer> queue = indices.get(value);
+        return queue == null ? null : queue.poll();
+    }
 }
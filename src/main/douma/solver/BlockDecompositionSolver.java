@@ -0,0 +1,561 @@
+package douma.solver;
+
+import douma.util.Pair;
+import douma.util.ScoreUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves an assignment problem made of weakly coupled blocks (regions) of addresses and drivers.
+ * Each block is solved on its own with {@link AssignmentSolver}, in parallel, and the block
+ * solutions are then checked together:
+ *
+ * Each block solve also yields dual values, a number per address and per driver such that the two
+ * numbers of every pair in the block add up to at least its score, with equality for assigned pairs
+ * and 0 for anything left unassigned. If that inequality also holds for every pair that crosses
+ * two blocks, the duals prove that the combined assignment is optimal for the whole problem. Each
+ * pair that violates it is a place where a cross-block assignment could improve the score, so the
+ * two blocks are merged and the check is repeated. In the worst case everything is merged into one
+ * block, which gives the answer of a single AssignmentSolver.
+ *
+ * A merged block is not solved from scratch. It starts from the assignments and duals of the blocks
+ * it absorbed, which already satisfy every pair inside those blocks. Only an address or driver with
+ * a violated pair has its dual raised to cover that pair and gives up its assignment. The assignment
+ * is then completed with one shortest augmenting path per released address or driver, so repairing
+ * a few boundary pairs between two large blocks costs a few augmentations rather than a new solve.
+ *
+ * Blocks are either supplied by the caller or detected by grouping every address with its best
+ * driver and every driver with its best address. Wall time is governed by the largest block plus
+ * one pass over all scores for the check.
+ *
+ * Addresses and drivers still unassigned at the end are paired with each other at score 0, so as
+ * many assignments are made as by AssignmentSolver.
+ */
+public class BlockDecompositionSolver {
+    private final List<String> addresses;
+    private final List<String> names;
+    private int[] blockOfAddress;
+    private int[] blockOfName;
+    private int numThreads;
+    private int numBlocks;
+    private int numRepairRounds;
+    private AssignmentResult result;
+
+    public BlockDecompositionSolver(final List<String> addresses, final List<String> names) {
+        this.addresses = new ArrayList<>(addresses);
+        this.names = new ArrayList<>(names);
+        this.numThreads = Runtime.getRuntime().availableProcessors();
+        this.result = null;
+    }
+
+    /**
+     * Sets the blocks to start from instead of detecting them. Block ids are arbitrary non-negative
+     * numbers; an address and a driver are in the same block when they have the same id.
+     *
+     * @throws IllegalArgumentException if an array does not have one entry per address or driver, or
+     *         an id is negative
+     */
+    public void setBlocks(final int[] blockOfAddress, final int[] blockOfName) {
+        if (blockOfAddress.length != addresses.size() || blockOfName.length != names.size()) {
+            throw new IllegalArgumentException("There must be exactly one block id per address and per driver");
+        }
+        for (int id: blockOfAddress) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Block ids must not be negative");
+            }
+        }
+        for (int id: blockOfName) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Block ids must not be negative");
+            }
+        }
+        this.blockOfAddress = blockOfAddress.clone();
+        this.blockOfName = blockOfName.clone();
+    }
+
+    /**
+     * @param numThreads number of blocks solved at the same time
+     * @throws IllegalArgumentException if numThreads is less than 1
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("At least one thread is required");
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Solves the blocks, then merges and re-solves blocks until the combined assignment is proven
+     * optimal
+     *
+     * @return the sum of the suitability scores associated with each assignment
+     */
+    public double solve() {
+        int numAddresses = addresses.size();
+        int numNames = names.size();
+        int[] parent = initialBlocks();
+
+        int[] driverOfAddress = new int[numAddresses];
+        double[] addressDuals = new double[numAddresses];
+        double[] nameDuals = new double[numNames];
+        boolean[] solved = new boolean[numAddresses + numNames];
+        numRepairRounds = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "block-solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            while (true) {
+                solveBlocks(pool, parent, solved, driverOfAddress, addressDuals, nameDuals, numRepairRounds > 0);
+                if (!mergeViolatedBlocks(parent, solved, addressDuals, nameDuals)) {
+                    break;
+                }
+                numRepairRounds++;
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        numBlocks = 0;
+        for (int node = 0; node < parent.length; node++) {
+            if (parent[node] == node) {
+                numBlocks++;
+            }
+        }
+        result = buildResult(driverOfAddress);
+        return result.getTotalScore();
+    }
+
+    /**
+     * Returns a list of the assignments determined by the algorithm
+     * @return null if called before solve
+     */
+    public List<Pair<String, String>> getAssignments() {
+        return result == null ? null : result.getAssignments();
+    }
+
+    /**
+     * Returns the assignments determined by the algorithm in index form
+     * @return null if called before solve
+     */
+    public AssignmentResult getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the number of blocks left after the last solve, counting blocks of a single address or
+     * driver
+     */
+    public int getNumBlocks() {
+        return numBlocks;
+    }
+
+    /**
+     * Returns the number of times blocks had to be merged and repaired during the last solve
+     */
+    public int getNumRepairRounds() {
+        return numRepairRounds;
+    }
+
+    /*
+     * Returns a union-find forest over the addresses (nodes 0 to numAddresses - 1) followed by the
+     * drivers, grouping the nodes of each initial block
+     */
+    private int[] initialBlocks() {
+        int numAddresses = addresses.size();
+        int numNames = names.size();
+        int[] parent = new int[numAddresses + numNames];
+        for (int node = 0; node < parent.length; node++) {
+            parent[node] = node;
+        }
+
+        if (blockOfAddress != null) {
+            Map<Integer, Integer> firstNodeOfBlock = new HashMap<>();
+            for (int node = 0; node < parent.length; node++) {
+                int block = node < numAddresses ? blockOfAddress[node] : blockOfName[node - numAddresses];
+                Integer first = firstNodeOfBlock.putIfAbsent(block, node);
+                if (first != null) {
+                    union(parent, first, node);
+                }
+            }
+            return parent;
+        }
+
+        // every address joins its best driver and every driver its best address
+        int[] bestAddressOfName = new int[numNames];
+        double[] bestScoreOfName = new double[numNames];
+        Arrays.fill(bestAddressOfName, -1);
+        for (int i = 0; i < numAddresses; i++) {
+            int bestName = -1;
+            double bestScore = 0;
+            for (int j = 0; j < numNames; j++) {
+                double score = ScoreUtils.suitabilityScore(addresses.get(i), names.get(j));
+                if (bestName == -1 || score > bestScore) {
+                    bestName = j;
+                    bestScore = score;
+                }
+                if (bestAddressOfName[j] == -1 || score > bestScoreOfName[j]) {
+                    bestAddressOfName[j] = i;
+                    bestScoreOfName[j] = score;
+                }
+            }
+            if (bestName != -1) {
+                union(parent, i, numAddresses + bestName);
+            }
+        }
+        for (int j = 0; j < numNames; j++) {
+            if (bestAddressOfName[j] != -1) {
+                union(parent, bestAddressOfName[j], numAddresses + j);
+            }
+        }
+        return parent;
+    }
+
+    /*
+     * Solves every block whose nodes are not marked as solved and stores its assignments and duals.
+     * With repair set the blocks are merged ones, which start from the stored assignments and duals.
+     */
+    private void solveBlocks(ExecutorService pool, int[] parent, boolean[] solved, int[] driverOfAddress,
+                             double[] addressDuals, double[] nameDuals, boolean repair) {
+        int numAddresses = addresses.size();
+        List<List<Integer>> addressesOfBlock = new ArrayList<>();
+        List<List<Integer>> namesOfBlock = new ArrayList<>();
+        int[] indexOfRoot = new int[parent.length];
+        Arrays.fill(indexOfRoot, -1);
+        for (int node = 0; node < parent.length; node++) {
+            if (solved[node]) {
+                continue;
+            }
+            int root = find(parent, node);
+            if (indexOfRoot[root] == -1) {
+                indexOfRoot[root] = addressesOfBlock.size();
+                addressesOfBlock.add(new ArrayList<>());
+                namesOfBlock.add(new ArrayList<>());
+            }
+            if (node < numAddresses) {
+                addressesOfBlock.get(indexOfRoot[root]).add(node);
+            } else {
+                namesOfBlock.get(indexOfRoot[root]).add(node - numAddresses);
+            }
+            solved[node] = true;
+        }
+
+        // blocks write disjoint entries of the shared arrays
+        List<Future<?>> futures = new ArrayList<>(addressesOfBlock.size());
+        for (int b = 0; b < addressesOfBlock.size(); b++) {
+            List<Integer> blockAddresses = addressesOfBlock.get(b);
+            List<Integer> blockNames = namesOfBlock.get(b);
+            futures.add(pool.submit(() -> {
+                if (repair) {
+                    repairBlock(blockAddresses, blockNames, driverOfAddress, addressDuals, nameDuals);
+                } else {
+                    solveBlock(blockAddresses, blockNames, driverOfAddress, addressDuals, nameDuals);
+                }
+            }));
+        }
+        for (Future<?> future: futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while solving blocks", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Block solve failed", e.getCause());
+            }
+        }
+    }
+
+    private void solveBlock(List<Integer> blockAddresses, List<Integer> blockNames, int[] driverOfAddress,
+                            double[] addressDuals, double[] nameDuals) {
+        List<String> subAddresses = new ArrayList<>(blockAddresses.size());
+        for (int i: blockAddresses) {
+            subAddresses.add(addresses.get(i));
+        }
+        List<String> subNames = new ArrayList<>(blockNames.size());
+        for (int j: blockNames) {
+            subNames.add(names.get(j));
+        }
+
+        AssignmentSolver solver = new AssignmentSolver(subAddresses, subNames);
+        solver.solve();
+        int[] subDrivers = solver.getResult().getDriverOfAddress();
+        double[] subAddressDuals = new double[subAddresses.size()];
+        double[] subNameDuals = new double[subNames.size()];
+        solver.getDuals(subAddressDuals, subNameDuals);
+
+        for (int k = 0; k < subAddresses.size(); k++) {
+            int i = blockAddresses.get(k);
+            driverOfAddress[i] = subDrivers[k] == AssignmentResult.UNASSIGNED
+                    ? AssignmentResult.UNASSIGNED : blockNames.get(subDrivers[k]);
+            addressDuals[i] = subAddressDuals[k];
+        }
+        for (int k = 0; k < subNames.size(); k++) {
+            nameDuals[blockNames.get(k)] = subNameDuals[k];
+        }
+    }
+
+    /*
+     * Re-optimizes a merged block from the assignments and duals of the blocks it absorbed.
+     *
+     * This works on the cost minimization over the smaller side (rows) and the larger side (columns)
+     * with potentials u = -dual and v = -dual, where a pair is feasible when u + v <= cost and
+     * assigned pairs are tight. Dummy rows of cost 0 make the problem square; they take the columns
+     * left unassigned, which have the largest potential. Lowering the potential of a row with an
+     * infeasible pair releases its assignment, and every released row is then assigned again along a
+     * shortest augmenting path (Dijkstra on the reduced costs), which keeps all pairs feasible.
+     */
+    private void repairBlock(List<Integer> blockAddresses, List<Integer> blockNames, int[] driverOfAddress,
+                             double[] addressDuals, double[] nameDuals) {
+        boolean rowsAreAddresses = blockAddresses.size() <= blockNames.size();
+        List<Integer> rows = rowsAreAddresses ? blockAddresses : blockNames;
+        List<Integer> cols = rowsAreAddresses ? blockNames : blockAddresses;
+        double[] rowDuals = rowsAreAddresses ? addressDuals : nameDuals;
+        double[] colDuals = rowsAreAddresses ? nameDuals : addressDuals;
+        int numRows = rows.size();
+        int size = cols.size();
+
+        double[][] costs = new double[numRows][size];
+        for (int r = 0; r < numRows; r++) {
+            for (int c = 0; c < size; c++) {
+                costs[r][c] = rowsAreAddresses
+                        ? -ScoreUtils.suitabilityScore(addresses.get(rows.get(r)), names.get(cols.get(c)))
+                        : -ScoreUtils.suitabilityScore(addresses.get(cols.get(c)), names.get(rows.get(r)));
+            }
+        }
+
+        // the last column is the root of the augmenting path search
+        double[] u = new double[size];
+        double[] v = new double[size + 1];
+        int[] rowOfCol = new int[size + 1];
+        int[] colOfRow = new int[size];
+        Arrays.fill(rowOfCol, -1);
+        Arrays.fill(colOfRow, -1);
+        for (int r = 0; r < numRows; r++) {
+            u[r] = -rowDuals[rows.get(r)];
+        }
+        double dummyPotential = Double.MAX_VALUE;
+        for (int c = 0; c < size; c++) {
+            v[c] = -colDuals[cols.get(c)];
+            dummyPotential = Math.min(dummyPotential, -v[c]);
+        }
+        Arrays.fill(u, numRows, size, dummyPotential);
+
+        Map<Integer, Integer> positionOfName = new HashMap<>();
+        for (int k = 0; k < blockNames.size(); k++) {
+            positionOfName.put(blockNames.get(k), k);
+        }
+        for (int k = 0; k < blockAddresses.size(); k++) {
+            int driver = driverOfAddress[blockAddresses.get(k)];
+            if (driver != AssignmentResult.UNASSIGNED) {
+                int r = rowsAreAddresses ? k : positionOfName.get(driver);
+                int c = rowsAreAddresses ? positionOfName.get(driver) : k;
+                colOfRow[r] = c;
+                rowOfCol[c] = r;
+            }
+        }
+        int nextDummy = numRows;
+        for (int c = 0; c < size && nextDummy < size; c++) {
+            if (rowOfCol[c] == -1 && dummyPotential + v[c] == 0) {
+                colOfRow[nextDummy] = c;
+                rowOfCol[c] = nextDummy++;
+            }
+        }
+
+        // only pairs across the absorbed blocks can be infeasible
+        for (int r = 0; r < numRows; r++) {
+            double feasible = u[r];
+            for (int c = 0; c < size; c++) {
+                feasible = Math.min(feasible, costs[r][c] - v[c]);
+            }
+            if (feasible < u[r]) {
+                u[r] = feasible;
+                if (colOfRow[r] != -1) {
+                    rowOfCol[colOfRow[r]] = -1;
+                    colOfRow[r] = -1;
+                }
+            }
+        }
+
+        double[] minSlack = new double[size + 1];
+        int[] previousCol = new int[size + 1];
+        boolean[] visited = new boolean[size + 1];
+        for (int r = 0; r < size; r++) {
+            if (colOfRow[r] == -1) {
+                augment(r, costs, u, v, rowOfCol, minSlack, previousCol, visited);
+            }
+        }
+
+        for (int k = 0; k < blockAddresses.size(); k++) {
+            driverOfAddress[blockAddresses.get(k)] = AssignmentResult.UNASSIGNED;
+        }
+        double minimum = Double.MAX_VALUE;
+        for (int c = 0; c < size; c++) {
+            minimum = Math.min(minimum, -v[c]);
+            int r = rowOfCol[c];
+            if (r < numRows) {
+                int address = rowsAreAddresses ? rows.get(r) : cols.get(c);
+                driverOfAddress[address] = rowsAreAddresses ? cols.get(c) : rows.get(r);
+            }
+        }
+        for (int r = 0; r < numRows; r++) {
+            rowDuals[rows.get(r)] = -u[r] + minimum;
+        }
+        for (int c = 0; c < size; c++) {
+            colDuals[cols.get(c)] = -v[c] - minimum;
+        }
+    }
+
+    /*
+     * Assigns the given row along a shortest augmenting path over the reduced costs, adjusting the
+     * potentials so that the path becomes tight. Rows from costs.length on are dummy rows of cost 0.
+     */
+    private static void augment(int start, double[][] costs, double[] u, double[] v, int[] rowOfCol,
+                                double[] minSlack, int[] previousCol, boolean[] visited) {
+        int root = rowOfCol.length - 1;
+        Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+        Arrays.fill(visited, false);
+        rowOfCol[root] = start;
+        int col = root;
+        do {
+            visited[col] = true;
+            int row = rowOfCol[col];
+            double delta = Double.POSITIVE_INFINITY;
+            int nextCol = -1;
+            for (int c = 0; c < root; c++) {
+                if (!visited[c]) {
+                    double slack = (row < costs.length ? costs[row][c] : 0) - u[row] - v[c];
+                    if (slack < minSlack[c]) {
+                        minSlack[c] = slack;
+                        previousCol[c] = col;
+                    }
+                    if (minSlack[c] < delta) {
+                        delta = minSlack[c];
+                        nextCol = c;
+                    }
+                }
+            }
+            for (int c = 0; c <= root; c++) {
+                if (visited[c]) {
+                    u[rowOfCol[c]] += delta;
+                    v[c] -= delta;
+                } else {
+                    minSlack[c] -= delta;
+                }
+            }
+            col = nextCol;
+        } while (rowOfCol[col] != -1);
+
+        while (col != root) {
+            int previous = previousCol[col];
+            rowOfCol[col] = rowOfCol[previous];
+            col = previous;
+        }
+        rowOfCol[root] = -1;
+    }
+
+    /*
+     * Checks every pair whose address and driver are in different blocks and merges the blocks of
+     * each pair scoring more than its duals. Nodes of blocks that absorbed another block are marked
+     * as unsolved.
+     *
+     * @return true if any blocks were merged
+     */
+    private boolean mergeViolatedBlocks(int[] parent, boolean[] solved, double[] addressDuals, double[] nameDuals) {
+        int numAddresses = addresses.size();
+        int[] oldRoot = new int[parent.length];
+        for (int node = 0; node < parent.length; node++) {
+            oldRoot[node] = find(parent, node);
+        }
+
+        boolean merged = false;
+        for (int i = 0; i < numAddresses; i++) {
+            for (int j = 0; j < names.size(); j++) {
+                if (oldRoot[numAddresses + j] == oldRoot[i]) {
+                    continue;
+                }
+                double score = ScoreUtils.suitabilityScore(addresses.get(i), names.get(j));
+                if (addressDuals[i] + nameDuals[j] < score) {
+                    union(parent, i, numAddresses + j);
+                    merged = true;
+                }
+            }
+        }
+        if (!merged) {
+            return false;
+        }
+
+        int[] oldRootOfBlock = new int[parent.length];
+        boolean[] isMerged = new boolean[parent.length];
+        Arrays.fill(oldRootOfBlock, -1);
+        for (int node = 0; node < parent.length; node++) {
+            int root = find(parent, node);
+            if (oldRootOfBlock[root] == -1) {
+                oldRootOfBlock[root] = oldRoot[node];
+            } else if (oldRootOfBlock[root] != oldRoot[node]) {
+                isMerged[root] = true;
+            }
+        }
+        for (int node = 0; node < parent.length; node++) {
+            if (isMerged[find(parent, node)]) {
+                solved[node] = false;
+            }
+        }
+        return true;
+    }
+
+    private AssignmentResult buildResult(int[] driverOfAddress) {
+        boolean[] nameTaken = new boolean[names.size()];
+        for (int j: driverOfAddress) {
+            if (j != AssignmentResult.UNASSIGNED) {
+                nameTaken[j] = true;
+            }
+        }
+
+        int nextFreeName = 0;
+        double[] scores = new double[addresses.size()];
+        double totalScore = 0;
+        int numAssignments = 0;
+        for (int i = 0; i < driverOfAddress.length; i++) {
+            if (driverOfAddress[i] == AssignmentResult.UNASSIGNED) {
+                while (nextFreeName < nameTaken.length && nameTaken[nextFreeName]) {
+                    nextFreeName++;
+                }
+                if (nextFreeName == nameTaken.length) {
+                    continue;
+                }
+                driverOfAddress[i] = nextFreeName;
+                nameTaken[nextFreeName] = true;
+            }
+            scores[i] = ScoreUtils.suitabilityScore(addresses.get(i), names.get(driverOfAddress[i]));
+            totalScore += scores[i];
+            numAssignments++;
+        }
+        return new AssignmentResult(addresses, names, driverOfAddress, scores, totalScore, numAssignments);
+    }
+
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package douma.solver;
+
+import douma.util.Pair;
+import douma.util.ScoreUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Assigns deliveries to drivers where each driver may take several deliveries. Driver
+ * <code>j</code> takes at most <code>capacities[j]</code> addresses and every address is given to
+ * at most one driver. The number of assignments made is the smaller of the number of addresses
+ * and the total capacity of the drivers, and among those the total suitability score is maximized.
+ *
+ * The problem is solved as a min-cost flow (source -> address -> driver -> sink) using successive
+ * shortest paths with node potentials, so a driver with capacity k occupies a single column of the
+ * cost matrix instead of k duplicated columns. Each shortest path search only settles drivers, with
+ * the cheapest address into or between drivers taken from per-driver orders and heaps, so one unit of
+ * flow costs O(m^2 + m log n) for n addresses and m distinct drivers instead of O((n + m)^2). Memory
+ * is proportional to the number of addresses times the number of distinct drivers.
+ */
+public class CapacitatedAssignmentSolver {
+    private final List<String> addresses;
+    private final List<String> names;
+    private final int[] capacities;
+    private AssignmentResult result;
+
+    /**
+     * @param addresses addresses to be delivered to
+     * @param names distinct driver names
+     * @param capacities maximum number of addresses for each driver, same order as names
+     * @throws IllegalArgumentException if the number of capacities differs from the number of names or
+     *         a capacity is negative
+     */
+    public CapacitatedAssignmentSolver(final List<String> addresses, final List<String> names, final int[] capacities) {
+        if (capacities.length != names.size()) {
+            throw new IllegalArgumentException("There must be exactly one capacity per driver");
+        }
+        for (int capacity: capacities) {
+            if (capacity < 0) {
+                throw new IllegalArgumentException("Driver capacities must not be negative");
+            }
+        }
+        this.addresses = new ArrayList<>(addresses);
+        this.names = new ArrayList<>(names);
+        this.capacities = capacities.clone();
+        this.result = null;
+    }
+
+    /**
+     * Determines the set of assignments that maximizes the total suitability score while respecting
+     * the capacity of each driver
+     *
+     * @return the sum of the suitability scores associated with each assignment
+     */
+    public double solve() {
+        int numAddresses = addresses.size();
+        int numDrivers = names.size();
+
+        // cost of sending one unit of flow from address i to driver j
+        double[][] cost = new double[numAddresses][numDrivers];
+        for (int i = 0; i < numAddresses; i++) {
+            for (int j = 0; j < numDrivers; j++) {
+                cost[i][j] = -1 * ScoreUtils.suitabilityScore(addresses.get(i), names.get(j));
+            }
+        }
+
+        long totalCapacity = 0;
+        for (int capacity: capacities) {
+            totalCapacity += capacity;
+        }
+        int flowRequired = (int) Math.min(numAddresses, totalCapacity);
+
+        int[] driverOfAddress = new int[numAddresses];
+        Arrays.fill(driverOfAddress, AssignmentResult.UNASSIGNED);
+        int[] load = new int[numDrivers];
+
+        // Only drivers are settled by the shortest path search. An unassigned address i reaches
+        // driver j from the source at cost[i][j], and moving an address i from driver k to driver j
+        // costs cost[i][j] - cost[i][k]. Neither depends on the potentials, so the cheapest way into
+        // each driver is kept in sorted orders and heaps that never need to be re-keyed:
+        // - addressesByCost[j] lists all addresses by cost[i][j]; assigned ones are skipped, and an
+        //   assigned address never becomes unassigned again
+        // - moveHeaps.get(k * numDrivers + j) holds the addresses on driver k by cost[i][j] - cost[i][k];
+        //   entries of addresses that have left k are dropped when they reach the top
+        int[][] addressesByCost = new int[numDrivers][];
+        int[] nextByCost = new int[numDrivers];
+        for (int j = 0; j < numDrivers; j++) {
+            final int driver = j;
+            addressesByCost[j] = IntStream.range(0, numAddresses).boxed()
+                    .sorted(Comparator.comparingDouble(i -> cost[i][driver]))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+        List<PriorityQueue<Integer>> moveHeaps = new ArrayList<>(Collections.nCopies(numDrivers * numDrivers, null));
+
+        // Potentials keep every residual edge at a non-negative reduced cost so Dijkstra can be used.
+        // Unassigned addresses stay at 0 and an assigned address sits at its driver's potential minus
+        // its cost, so only drivers and the sink need one. Drivers start at their cheapest incoming
+        // edge and the sink at the cheapest driver.
+        double[] driverPotential = new double[numDrivers];
+        double sinkPotential = 0;
+        for (int j = 0; j < numDrivers; j++) {
+            double minimum = 0;
+            for (int i = 0; i < numAddresses; i++) {
+                minimum = Math.min(minimum, cost[i][j]);
+            }
+            driverPotential[j] = minimum;
+            sinkPotential = Math.min(sinkPotential, minimum);
+        }
+
+        double[] driverDistance = new double[numDrivers];
+        boolean[] driverDone = new boolean[numDrivers];
+        int[] previousAddressOfDriver = new int[numDrivers];
+        int[] previousDriverOfDriver = new int[numDrivers];
+
+        for (int flow = 0; flow < flowRequired; flow++) {
+            for (int j = 0; j < numDrivers; j++) {
+                driverDone[j] = false;
+                int i = cheapestUnassignedAddress(addressesByCost[j], nextByCost, j, driverOfAddress);
+                driverDistance[j] = i == -1 ? Double.MAX_VALUE : cost[i][j] - driverPotential[j];
+                previousAddressOfDriver[j] = i;
+                previousDriverOfDriver[j] = -1;
+            }
+            double sinkDistance = Double.MAX_VALUE;
+            int driverBeforeSink = -1;
+
+            while (true) {
+                int k = -1;
+                for (int j = 0; j < numDrivers; j++) {
+                    if (!driverDone[j] && (k == -1 || driverDistance[j] < driverDistance[k])) {
+                        k = j;
+                    }
+                }
+                if (k == -1 || sinkDistance <= driverDistance[k]) {
+                    break;
+                }
+                driverDone[k] = true;
+                if (load[k] < capacities[k]) {
+                    double distance = driverDistance[k] + driverPotential[k] - sinkPotential;
+                    if (distance < sinkDistance) {
+                        sinkDistance = distance;
+                        driverBeforeSink = k;
+                    }
+                }
+                if (load[k] == 0) {
+                    continue;
+                }
+                for (int j = 0; j < numDrivers; j++) {
+                    if (driverDone[j]) {
+                        continue;
+                    }
+                    PriorityQueue<Integer> heap = moveHeaps.get(k * numDrivers + j);
+                    while (heap != null && !heap.isEmpty() && driverOfAddress[heap.peek()] != k) {
+                        heap.poll();
+                    }
+                    if (heap == null || heap.isEmpty()) {
+                        continue;
+                    }
+                    int i = heap.peek();
+                    double distance = driverDistance[k] + driverPotential[k] - driverPotential[j] + cost[i][j] - cost[i][k];
+                    if (distance < driverDistance[j]) {
+                        driverDistance[j] = distance;
+                        previousAddressOfDriver[j] = i;
+                        previousDriverOfDriver[j] = k;
+                    }
+                }
+            }
+
+            // Drivers not settled before the sink are at least as far away as the sink, so capping their
+            // distance at the sink distance keeps all reduced costs non-negative.
+            for (int j = 0; j < numDrivers; j++) {
+                driverPotential[j] += Math.min(driverDistance[j], sinkDistance);
+            }
+            sinkPotential += sinkDistance;
+
+            // push one unit of flow back along the shortest path
+            int driver = driverBeforeSink;
+            load[driver]++;
+            while (driver != -1) {
+                int address = previousAddressOfDriver[driver];
+                driverOfAddress[address] = driver;
+                for (int j = 0; j < numDrivers; j++) {
+                    if (j == driver) {
+                        continue;
+                    }
+                    final int from = driver;
+                    final int to = j;
+                    PriorityQueue<Integer> heap = moveHeaps.get(from * numDrivers + to);
+                    if (heap == null) {
+                        heap = new PriorityQueue<>(Comparator.comparingDouble(i -> cost[i][to] - cost[i][from]));
+                        moveHeaps.set(from * numDrivers + to, heap);
+                    }
+                    heap.add(address);
+                }
+                driver = previousDriverOfDriver[driver];
+            }
+        }
+
+        double[] scores = new double[numAddresses];
+        double totalScore = 0;
+        for (int i = 0; i < numAddresses; i++) {
+            if (driverOfAddress[i] != AssignmentResult.UNASSIGNED) {
+                scores[i] = -cost[i][driverOfAddress[i]];
+                totalScore += scores[i];
+            }
+        }
+        result = new AssignmentResult(addresses, names, driverOfAddress, scores, totalScore, flowRequired);
+        return totalScore;
+    }
+
+    /*
+     * Returns the cheapest unassigned address for the driver, -1 if every address is assigned
+     */
+    private static int cheapestUnassignedAddress(int[] addressesByCost, int[] nextByCost, int driver,
+                                                 int[] driverOfAddress) {
+        while (nextByCost[driver] < addressesByCost.length
+                && driverOfAddress[addressesByCost[nextByCost[driver]]] != AssignmentResult.UNASSIGNED) {
+            nextByCost[driver]++;
+        }
+        return nextByCost[driver] < addressesByCost.length ? addressesByCost[nextByCost[driver]] : -1;
+    }
+
+    /**
+     * Returns a list of the assignments determined by the algorithm, one entry per address assigned
+     * @return null if called before solve
+     */
+    public List<Pair<String, String>> getAssignments() {
+        return result == null ? null : result.getAssignments();
+    }
+
+    /**
+     * Returns the assignments determined by the algorithm in index form
+     * @return null if called before solve
+     */
+    public AssignmentResult getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,341 @@
+package douma.solver;
+
+import douma.util.Pair;
+import douma.util.ScoreUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps an optimal assignment of a fixed set of drivers to addresses that arrive and expire over
+ * time. At any moment the total suitability score of the live assignment is the maximum possible for
+ * the addresses currently held. An address is only given a driver when that adds to the score, so
+ * addresses whose every pairing scores 0 may stay unassigned while drivers are free.
+ *
+ * The matching is kept as a circulation in which every address is joined to every driver and both
+ * sides are joined to a common origin node, together with a potential per node so every residual
+ * edge has a non-negative reduced cost. An event can only create one edge of negative reduced cost,
+ * on the new address or on the driver freed by an expired address, so a single shortest path search
+ * (one augmenting path) restores optimality:
+ *
+ * - insert runs a Dijkstra search over the drivers only, O(drivers^2) regardless of how many
+ *   addresses are held
+ * - retiring an unassigned address is O(1); retiring an assigned one also considers the unassigned
+ *   addresses as replacements, O(addresses * drivers)
+ *
+ * Memory is fixed at construction: one row of scores per address slot.
+ */
+public class OnlineAssignment {
+    private static final int FROM_ORIGIN = -2;
+
+    private final List<String> names;
+    private final String[] addressOfSlot;
+    private final double[][] cost;
+    private final int[] driverOfSlot;
+    private final int[] slotOfDriver;
+    private final double[] slotPotential;
+    private final double[] driverPotential;
+    private final int[] freeSlots;
+    private int numFreeSlots;
+    private double totalScore;
+
+    // scratch space for the shortest path searches
+    private final double[] driverDistance;
+    private final boolean[] driverDone;
+    private final int[] previousSlotOfDriver;
+    private final int[] settledDrivers;
+
+    /**
+     * @param names drivers available for the whole lifetime of the assignment
+     * @param maxAddresses maximum number of addresses held at the same time
+     */
+    public OnlineAssignment(final List<String> names, int maxAddresses) {
+        this.names = new ArrayList<>(names);
+        int numDrivers = this.names.size();
+        addressOfSlot = new String[maxAddresses];
+        cost = new double[maxAddresses][numDrivers];
+        driverOfSlot = new int[maxAddresses];
+        slotOfDriver = new int[numDrivers];
+        slotPotential = new double[maxAddresses];
+        driverPotential = new double[numDrivers];
+        freeSlots = new int[maxAddresses];
+        for (int s = 0; s < maxAddresses; s++) {
+            freeSlots[s] = maxAddresses - 1 - s;
+        }
+        numFreeSlots = maxAddresses;
+        Arrays.fill(driverOfSlot, AssignmentResult.UNASSIGNED);
+        Arrays.fill(slotOfDriver, -1);
+
+        driverDistance = new double[numDrivers];
+        driverDone = new boolean[numDrivers];
+        previousSlotOfDriver = new int[numDrivers];
+        settledDrivers = new int[numDrivers];
+    }
+
+    /**
+     * Adds an address and updates the assignment
+     *
+     * @return handle of the address, valid until it is retired
+     * @throws IllegalStateException if maxAddresses addresses are already held
+     */
+    public int insert(final String address) {
+        if (numFreeSlots == 0) {
+            throw new IllegalStateException("No room for more than " + addressOfSlot.length + " addresses");
+        }
+        int slot = freeSlots[--numFreeSlots];
+        addressOfSlot[slot] = address;
+        driverOfSlot[slot] = AssignmentResult.UNASSIGNED;
+        double[] row = cost[slot];
+        double potential = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < row.length; j++) {
+            row[j] = -1 * ScoreUtils.suitabilityScore(address, names.get(j));
+            potential = Math.max(potential, driverPotential[j] - row[j]);
+        }
+
+        // A non-positive potential keeps every edge of the new address feasible, so leaving it
+        // unassigned is optimal
+        if (row.length == 0 || potential <= 0) {
+            slotPotential[slot] = row.length == 0 ? 0 : potential;
+            return slot;
+        }
+        slotPotential[slot] = potential;
+
+        // shortest path from the new address back to the origin
+        for (int j = 0; j < row.length; j++) {
+            driverDistance[j] = row[j] + potential - driverPotential[j];
+            driverDone[j] = false;
+            previousSlotOfDriver[j] = slot;
+        }
+        double originDistance = Double.MAX_VALUE;
+        int originViaSlot = -1;
+        int originViaDriver = -1;
+        int numSettled = 0;
+        while (true) {
+            int j = nextDriver();
+            if (j == -1 || originDistance <= driverDistance[j]) {
+                break;
+            }
+            driverDone[j] = true;
+            settledDrivers[numSettled++] = j;
+            int i = slotOfDriver[j];
+            if (i == -1) {
+                if (driverDistance[j] + driverPotential[j] < originDistance) {
+                    originDistance = driverDistance[j] + driverPotential[j];
+                    originViaDriver = j;
+                    originViaSlot = -1;
+                }
+                continue;
+            }
+            if (driverDistance[j] + slotPotential[i] < originDistance) {
+                originDistance = driverDistance[j] + slotPotential[i];
+                originViaSlot = i;
+                originViaDriver = -1;
+            }
+            relax(i, driverDistance[j]);
+        }
+
+        // shift potentials so the origin stays at 0; nodes not settled are left unchanged
+        slotPotential[slot] -= originDistance;
+        for (int k = 0; k < numSettled; k++) {
+            int j = settledDrivers[k];
+            double delta = originDistance - driverDistance[j];
+            driverPotential[j] -= delta;
+            if (slotOfDriver[j] != -1) {
+                slotPotential[slotOfDriver[j]] -= delta;
+            }
+        }
+
+        if (slotPotential[slot] > 0) {
+            // the cycle through the new address has negative cost: push flow around it
+            int j = originViaDriver;
+            if (originViaSlot != -1) {
+                j = driverOfSlot[originViaSlot];
+                unassign(originViaSlot);
+            }
+            while (true) {
+                int i = previousSlotOfDriver[j];
+                int previousDriver = driverOfSlot[i];
+                if (previousDriver != AssignmentResult.UNASSIGNED) {
+                    unassign(i);
+                }
+                assign(i, j);
+                if (i == slot) {
+                    break;
+                }
+                j = previousDriver;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Removes an address and updates the assignment
+     *
+     * @param handle value returned by insert for the address
+     * @throws IllegalArgumentException if the handle does not refer to a live address
+     */
+    public void retire(int handle) {
+        checkHandle(handle);
+        int freedDriver = driverOfSlot[handle];
+        if (freedDriver != AssignmentResult.UNASSIGNED) {
+            unassign(handle);
+        }
+        addressOfSlot[handle] = null;
+        freeSlots[numFreeSlots++] = handle;
+        if (freedDriver == AssignmentResult.UNASSIGNED || driverPotential[freedDriver] >= 0) {
+            return;
+        }
+        if (getNumAddresses() == 0) {
+            driverPotential[freedDriver] = 0;
+            return;
+        }
+
+        // The freed driver's edge to the origin now has negative reduced cost. Look for the shortest
+        // path from the origin to that driver, either through an unassigned address or by taking
+        // an assigned driver away from its address.
+        for (int j = 0; j < driverDistance.length; j++) {
+            driverDone[j] = false;
+            driverDistance[j] = Double.MAX_VALUE;
+            previousSlotOfDriver[j] = -1;
+            if (slotOfDriver[j] != -1) {
+                driverDistance[j] = -driverPotential[j];
+                previousSlotOfDriver[j] = FROM_ORIGIN;
+            }
+        }
+        for (int i = 0; i < addressOfSlot.length; i++) {
+            if (addressOfSlot[i] != null && driverOfSlot[i] == AssignmentResult.UNASSIGNED) {
+                relax(i, -slotPotential[i]);
+            }
+        }
+        while (true) {
+            int j = nextDriver();
+            if (j == freedDriver) {
+                break;
+            }
+            driverDone[j] = true;
+            if (slotOfDriver[j] != -1) {
+                relax(slotOfDriver[j], driverDistance[j]);
+            }
+        }
+
+        double targetDistance = driverDistance[freedDriver];
+        for (int i = 0; i < addressOfSlot.length; i++) {
+            if (addressOfSlot[i] == null) {
+                continue;
+            }
+            int j = driverOfSlot[i];
+            double distance = j == AssignmentResult.UNASSIGNED ? -slotPotential[i] : driverDistance[j];
+            slotPotential[i] += Math.min(distance, targetDistance);
+        }
+        for (int j = 0; j < driverDistance.length; j++) {
+            driverPotential[j] += Math.min(driverDistance[j], targetDistance);
+        }
+
+        if (driverPotential[freedDriver] < 0) {
+            // the cycle through the freed driver has negative cost: push flow around it
+            int j = freedDriver;
+            while (true) {
+                int i = previousSlotOfDriver[j];
+                int previousDriver = driverOfSlot[i];
+                if (previousDriver != AssignmentResult.UNASSIGNED) {
+                    unassign(i);
+                }
+                assign(i, j);
+                if (previousDriver == AssignmentResult.UNASSIGNED || previousSlotOfDriver[previousDriver] == FROM_ORIGIN) {
+                    break;
+                }
+                j = previousDriver;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the driver assigned to the address, AssignmentResult.UNASSIGNED if none
+     * @throws IllegalArgumentException if the handle does not refer to a live address
+     */
+    public int getDriverOf(int handle) {
+        checkHandle(handle);
+        return driverOfSlot[handle];
+    }
+
+    /**
+     * Returns the sum of the suitability scores of the current assignment
+     */
+    public double getTotalScore() {
+        return totalScore;
+    }
+
+    /**
+     * Returns the number of addresses currently held
+     */
+    public int getNumAddresses() {
+        return addressOfSlot.length - numFreeSlots;
+    }
+
+    /**
+     * Returns the current assignments as (address, driver name) pairs ordered by driver index
+     */
+    public List<Pair<String, String>> getAssignments() {
+        List<Pair<String, String>> retList = new ArrayList<>();
+        for (int j = 0; j < slotOfDriver.length; j++) {
+            if (slotOfDriver[j] != -1) {
+                retList.add(new Pair<>(addressOfSlot[slotOfDriver[j]], names.get(j)));
+            }
+        }
+        return retList;
+    }
+
+    /*
+     * Returns the unsettled driver closest to the search origin, -1 if none is reachable
+     */
+    private int nextDriver() {
+        int next = -1;
+        for (int j = 0; j < driverDistance.length; j++) {
+            if (!driverDone[j] && driverDistance[j] < Double.MAX_VALUE
+                    && (next == -1 || driverDistance[j] < driverDistance[next])) {
+                next = j;
+            }
+        }
+        return next;
+    }
+
+    /*
+     * Relaxes the edges from the address in the given slot, reached at the given distance, to every
+     * unsettled driver
+     */
+    private void relax(int slot, double distance) {
+        double[] row = cost[slot];
+        for (int k = 0; k < row.length; k++) {
+            if (driverDone[k]) {
+                continue;
+            }
+            double candidate = distance + row[k] + slotPotential[slot] - driverPotential[k];
+            if (candidate < driverDistance[k]) {
+                driverDistance[k] = candidate;
+                previousSlotOfDriver[k] = slot;
+            }
+        }
+    }
+
+    private void assign(int slot, int driver) {
+        driverOfSlot[slot] = driver;
+        slotOfDriver[driver] = slot;
+        totalScore -= cost[slot][driver];
+    }
+
+    private void unassign(int slot) {
+        int driver = driverOfSlot[slot];
+        totalScore += cost[slot][driver];
+        driverOfSlot[slot] = AssignmentResult.UNASSIGNED;
+        if (slotOfDriver[driver] == slot) {
+            slotOfDriver[driver] = -1;
+        }
+    }
+
+    private void checkHandle(int handle) {
+        if (handle < 0 || handle >= addressOfSlot.length || addressOfSlot[handle] == null) {
+            throw new IllegalArgumentException("No live address with handle " + handle);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package douma.solver;
+
+/**
+ * One reduction made by the presolve pass of {@link AssignmentSolver}. Indices refer to the address
+ * and driver lists the solver was created with.
+ */
+public class PresolveStep {
+    public enum Kind {
+        /** The address and driver were assigned to each other and removed */
+        FORCED_ASSIGNMENT,
+        /** The address was removed because enough other addresses score at least as well everywhere */
+        DOMINATED_ADDRESS,
+        /** The driver was removed because enough other drivers score at least as well everywhere */
+        DOMINATED_DRIVER
+    }
+
+    private final Kind kind;
+    private final int address;
+    private final int driver;
+
+    PresolveStep(Kind kind, int address, int driver) {
+        this.kind = kind;
+        this.address = address;
+        this.driver = driver;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the address index, -1 for DOMINATED_DRIVER
+     */
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * Returns the driver index, -1 for DOMINATED_ADDRESS
+     */
+    public int getDriver() {
+        return driver;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case FORCED_ASSIGNMENT:
+                return "address " + address + " forced to driver " + driver;
+            case DOMINATED_ADDRESS:
+                return "address " + address + " dominated";
+            default:
+                return "driver " + driver + " dominated";
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package douma.solver;
+
+import douma.util.ScoreUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shrinks an assignment problem before the Munkres algorithm runs. Two reductions are applied
+ * alternately until neither finds anything or MAX_PASSES passes have been made:
+ *
+ * Forced assignment. Address i is assigned driver j when j is the best driver for i, i is a best
+ * address for j, and the margin of j over i's next best driver is at least the largest gain
+ * s(k, j) - min(s(k, *)) any other address k could make by taking j. Swapping any optimal solution
+ * onto (i, j) then never lowers the score, so an optimal solution containing (i, j) exists.
+ *
+ * Dominance. When there are more addresses than drivers, an address is dropped when at least as
+ * many other addresses as there are drivers score at least as well with every driver: in any optimal
+ * solution one of those addresses is unassigned and can take its place. Drivers are dropped in the
+ * same way when they outnumber addresses. Two cheap tests find such addresses: one compares each
+ * address's best score with the worst scores of the others, the other groups addresses with identical
+ * scores (suitability scores depend only on the length of an address, so groups are large) and
+ * compares the groups entry by entry when there are at most MAX_COMPARED_GROUPS of them.
+ *
+ * Apart from the group comparison, each pass takes time proportional to the number of remaining
+ * scores.
+ */
+class Presolver {
+    private static final int MAX_PASSES = 8;
+    private static final int MAX_COMPARED_GROUPS = 512;
+
+    private final Reduction reduction;
+    private final int[] addressIndex;
+    private final int[] driverIndex;
+    private final double[][] scores;
+    private final boolean[] rowActive;
+    private final boolean[] colActive;
+    private int numRows;
+    private int numCols;
+    private final List<PresolveStep> steps;
+
+    /**
+     * @param reduction reductions made so far; the presolve adds its own to it
+     */
+    Presolver(final List<String> addresses, final List<String> names, final Reduction reduction) {
+        this.reduction = reduction;
+        this.addressIndex = reduction.getRemainingAddressIndices();
+        this.driverIndex = reduction.getRemainingNameIndices();
+        this.numRows = addressIndex.length;
+        this.numCols = driverIndex.length;
+        this.scores = new double[numRows][numCols];
+        for (int r = 0; r < numRows; r++) {
+            for (int c = 0; c < numCols; c++) {
+                scores[r][c] = ScoreUtils.suitabilityScore(addresses.get(addressIndex[r]), names.get(driverIndex[c]));
+            }
+        }
+        this.rowActive = new boolean[numRows];
+        this.colActive = new boolean[numCols];
+        Arrays.fill(rowActive, true);
+        Arrays.fill(colActive, true);
+        this.steps = new ArrayList<>();
+    }
+
+    /**
+     * Applies the reductions
+     *
+     * @return scores of the remaining problem, indexed [address][driver] in the order of
+     *         Reduction.getRemainingAddresses and Reduction.getRemainingNames
+     */
+    double[][] run() {
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean changed = fixForcedAssignments();
+            changed |= dropDominatedLines(numRows > numCols);
+            changed |= dropDominatedGroups(numRows > numCols);
+            if (!changed) {
+                break;
+            }
+        }
+
+        double[][] remaining = new double[numRows][numCols];
+        int k = 0;
+        for (int r = 0; r < rowActive.length; r++) {
+            if (!rowActive[r]) {
+                continue;
+            }
+            int l = 0;
+            for (int c = 0; c < colActive.length; c++) {
+                if (colActive[c]) {
+                    remaining[k][l++] = scores[r][c];
+                }
+            }
+            k++;
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns the reductions in the order they were made
+     */
+    List<PresolveStep> getSteps() {
+        return steps;
+    }
+
+    private boolean fixForcedAssignments() {
+        if (numRows == 0 || numCols == 0) {
+            return false;
+        }
+
+        int[] bestCol = new int[rowActive.length];
+        double[] secondBest = new double[rowActive.length];
+        double[] rowMin = new double[rowActive.length];
+        for (int r = 0; r < rowActive.length; r++) {
+            if (!rowActive[r]) {
+                continue;
+            }
+            bestCol[r] = -1;
+            secondBest[r] = Double.NEGATIVE_INFINITY;
+            rowMin[r] = Double.MAX_VALUE;
+            for (int c = 0; c < colActive.length; c++) {
+                if (!colActive[c]) {
+                    continue;
+                }
+                double score = scores[r][c];
+                rowMin[r] = Math.min(rowMin[r], score);
+                if (bestCol[r] == -1 || score > scores[r][bestCol[r]]) {
+                    if (bestCol[r] != -1) {
+                        secondBest[r] = scores[r][bestCol[r]];
+                    }
+                    bestCol[r] = c;
+                } else {
+                    secondBest[r] = Math.max(secondBest[r], score);
+                }
+            }
+        }
+
+        // per column: best score, and the two largest gains s(k, c) - min(s(k, *)) with the row of the largest
+        double[] colMax = new double[colActive.length];
+        double[] topGain = new double[colActive.length];
+        double[] secondGain = new double[colActive.length];
+        int[] topGainRow = new int[colActive.length];
+        Arrays.fill(colMax, Double.NEGATIVE_INFINITY);
+        Arrays.fill(topGain, Double.NEGATIVE_INFINITY);
+        Arrays.fill(secondGain, Double.NEGATIVE_INFINITY);
+        for (int r = 0; r < rowActive.length; r++) {
+            if (!rowActive[r]) {
+                continue;
+            }
+            for (int c = 0; c < colActive.length; c++) {
+                if (!colActive[c]) {
+                    continue;
+                }
+                colMax[c] = Math.max(colMax[c], scores[r][c]);
+                double gain = scores[r][c] - rowMin[r];
+                if (gain > topGain[c]) {
+                    secondGain[c] = topGain[c];
+                    topGain[c] = gain;
+                    topGainRow[c] = r;
+                } else {
+                    secondGain[c] = Math.max(secondGain[c], gain);
+                }
+            }
+        }
+
+        // Removing other rows and columns only strengthens these conditions, so every pair found
+        // here remains safe after the others are fixed
+        boolean changed = false;
+        for (int r = 0; r < rowActive.length; r++) {
+            if (!rowActive[r] || !colActive[bestCol[r]]) {
+                continue;
+            }
+            int c = bestCol[r];
+            double competition = topGainRow[c] == r ? secondGain[c] : topGain[c];
+            if (scores[r][c] >= colMax[c] && scores[r][c] - secondBest[r] >= competition) {
+                rowActive[r] = false;
+                colActive[c] = false;
+                numRows--;
+                numCols--;
+                reduction.fix(addressIndex[r], driverIndex[c]);
+                steps.add(new PresolveStep(PresolveStep.Kind.FORCED_ASSIGNMENT, addressIndex[r], driverIndex[c]));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /*
+     * Drops rows (or columns when byRow is false) of the larger side whose maximum is no larger than
+     * the minimum of at least as many other lines as the smaller side has. Lines are visited from the
+     * smallest maximum upwards, so a line dropped earlier can only have counted towards a later one
+     * when both are constant with the same value; those are subtracted again.
+     */
+    private boolean dropDominatedLines(boolean byRow) {
+        boolean[] lineActive = byRow ? rowActive : colActive;
+        boolean[] crossActive = byRow ? colActive : rowActive;
+        int numLines = byRow ? numRows : numCols;
+        int numCross = byRow ? numCols : numRows;
+        if (numLines <= numCross || numCross == 0) {
+            return false;
+        }
+
+        double[] lineMin = new double[lineActive.length];
+        double[] lineMax = new double[lineActive.length];
+        List<Integer> lines = new ArrayList<>(numLines);
+        double[] sortedMins = new double[numLines];
+        for (int a = 0; a < lineActive.length; a++) {
+            if (!lineActive[a]) {
+                continue;
+            }
+            lineMin[a] = Double.MAX_VALUE;
+            lineMax[a] = Double.NEGATIVE_INFINITY;
+            for (int b = 0; b < crossActive.length; b++) {
+                if (crossActive[b]) {
+                    double score = byRow ? scores[a][b] : scores[b][a];
+                    lineMin[a] = Math.min(lineMin[a], score);
+                    lineMax[a] = Math.max(lineMax[a], score);
+                }
+            }
+            sortedMins[lines.size()] = lineMin[a];
+            lines.add(a);
+        }
+        Arrays.sort(sortedMins);
+        lines.sort(Comparator.comparingDouble((Integer a) -> lineMax[a]).thenComparing(a -> a));
+
+        Map<Double, Integer> droppedConstantLines = new HashMap<>();
+        boolean changed = false;
+        for (int a: lines) {
+            int dominators = numLines - lowerBound(sortedMins, lineMax[a]);
+            if (lineMin[a] >= lineMax[a]) {
+                dominators--;
+            }
+            dominators -= droppedConstantLines.getOrDefault(lineMax[a], 0);
+            if (dominators < numCross) {
+                continue;
+            }
+
+            lineActive[a] = false;
+            if (lineMin[a] == lineMax[a]) {
+                droppedConstantLines.merge(lineMax[a], 1, Integer::sum);
+            }
+            if (byRow) {
+                numRows--;
+                reduction.removeAddress(addressIndex[a]);
+                steps.add(new PresolveStep(PresolveStep.Kind.DOMINATED_ADDRESS, addressIndex[a], -1));
+            } else {
+                numCols--;
+                reduction.removeName(driverIndex[a]);
+                steps.add(new PresolveStep(PresolveStep.Kind.DOMINATED_DRIVER, -1, driverIndex[a]));
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /*
+     * Groups the lines of the larger side by their scores, then visits the groups from the largest
+     * score sum down. A group's dominators are the active lines of earlier groups that score at
+     * least as well everywhere; copies beyond what is needed to reach numCross dominators are dropped.
+     */
+    private boolean dropDominatedGroups(boolean byRow) {
+        boolean[] lineActive = byRow ? rowActive : colActive;
+        boolean[] crossActive = byRow ? colActive : rowActive;
+        int numLines = byRow ? numRows : numCols;
+        int numCross = byRow ? numCols : numRows;
+        if (numLines <= numCross || numCross == 0) {
+            return false;
+        }
+
+        Map<Line, List<Integer>> linesByScores = new HashMap<>();
+        for (int a = 0; a < lineActive.length; a++) {
+            if (!lineActive[a]) {
+                continue;
+            }
+            double[] values = new double[numCross];
+            int k = 0;
+            for (int b = 0; b < crossActive.length; b++) {
+                if (crossActive[b]) {
+                    values[k++] = byRow ? scores[a][b] : scores[b][a];
+                }
+            }
+            linesByScores.computeIfAbsent(new Line(values), line -> new ArrayList<>()).add(a);
+        }
+        if (linesByScores.size() == numLines) {
+            return false;
+        }
+        List<Line> groups = new ArrayList<>(linesByScores.keySet());
+        groups.sort(Comparator.comparingDouble((Line line) -> -line.sum));
+        boolean compareGroups = groups.size() <= MAX_COMPARED_GROUPS;
+
+        int[] numKept = new int[groups.size()];
+        boolean changed = false;
+        for (int g = 0; g < groups.size(); g++) {
+            Line group = groups.get(g);
+            int dominators = 0;
+            for (int h = 0; compareGroups && h < g; h++) {
+                if (numKept[h] > 0 && groups.get(h).dominates(group)) {
+                    dominators += numKept[h];
+                }
+            }
+            List<Integer> members = linesByScores.get(group);
+            numKept[g] = Math.min(members.size(), Math.max(numCross - dominators, 0));
+            for (int a: members.subList(numKept[g], members.size())) {
+                lineActive[a] = false;
+                if (byRow) {
+                    numRows--;
+                    reduction.removeAddress(addressIndex[a]);
+                    steps.add(new PresolveStep(PresolveStep.Kind.DOMINATED_ADDRESS, addressIndex[a], -1));
+                } else {
+                    numCols--;
+                    reduction.removeName(driverIndex[a]);
+                    steps.add(new PresolveStep(PresolveStep.Kind.DOMINATED_DRIVER, -1, driverIndex[a]));
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /*
+     * Returns the index of the first entry of the sorted array that is not less than value
+     */
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Scores of one line against the active lines of the other side, usable as a hash key
+     */
+    private static final class Line {
+        private final double[] values;
+        private final double sum;
+        private final int hash;
+
+        Line(double[] values) {
+            this.values = values;
+            double total = 0;
+            for (double value: values) {
+                total += value;
+            }
+            this.sum = total;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        boolean dominates(Line other) {
+            for (int k = 0; k < values.length; k++) {
+                if (values[k] < other.values[k]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Line && Arrays.equals(values, ((Line) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
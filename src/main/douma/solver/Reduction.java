@@ -0,0 +1,163 @@
+package douma.solver;
+
+import douma.util.ScoreUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records which addresses and drivers are taken out of a problem before the cost matrix is built,
+ * either because they are fixed to each other or because they are dropped, and maps the result of
+ * the remaining problem back to the original indices.
+ */
+class Reduction {
+    private final List<String> addresses;
+    private final List<String> names;
+    private final int[] fixedDriverOfAddress;
+    private final boolean[] addressRemoved;
+    private final boolean[] nameRemoved;
+    private int[] keptAddresses;
+    private int[] keptNames;
+
+    Reduction(final List<String> addresses, final List<String> names) {
+        this.addresses = addresses;
+        this.names = names;
+        this.fixedDriverOfAddress = new int[addresses.size()];
+        this.addressRemoved = new boolean[addresses.size()];
+        this.nameRemoved = new boolean[names.size()];
+        Arrays.fill(fixedDriverOfAddress, AssignmentResult.UNASSIGNED);
+    }
+
+    /**
+     * Assigns the driver to the address and removes both from the remaining problem
+     */
+    void fix(int address, int driver) {
+        fixedDriverOfAddress[address] = driver;
+        addressRemoved[address] = true;
+        nameRemoved[driver] = true;
+        keptAddresses = null;
+    }
+
+    /**
+     * Removes an address from the remaining problem without assigning it
+     */
+    void removeAddress(int address) {
+        addressRemoved[address] = true;
+        keptAddresses = null;
+    }
+
+    /**
+     * Removes a driver from the remaining problem without assigning it
+     */
+    void removeName(int driver) {
+        nameRemoved[driver] = true;
+        keptAddresses = null;
+    }
+
+    boolean isAddressRemoved(int address) {
+        return addressRemoved[address];
+    }
+
+    boolean isNameRemoved(int driver) {
+        return nameRemoved[driver];
+    }
+
+    /**
+     * Returns the addresses of the remaining problem
+     */
+    List<String> getRemainingAddresses() {
+        index();
+        List<String> remaining = new ArrayList<>(keptAddresses.length);
+        for (int i: keptAddresses) {
+            remaining.add(addresses.get(i));
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns the driver names of the remaining problem
+     */
+    List<String> getRemainingNames() {
+        index();
+        List<String> remaining = new ArrayList<>(keptNames.length);
+        for (int j: keptNames) {
+            remaining.add(names.get(j));
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns the original indices of the addresses of the remaining problem
+     */
+    int[] getRemainingAddressIndices() {
+        index();
+        return keptAddresses.clone();
+    }
+
+    /**
+     * Returns the original indices of the drivers of the remaining problem
+     */
+    int[] getRemainingNameIndices() {
+        index();
+        return keptNames.clone();
+    }
+
+    /**
+     * Combines the fixed assignments with the result of the remaining problem
+     *
+     * @param remaining result of solving the remaining problem, null if it was empty
+     */
+    AssignmentResult merge(final AssignmentResult remaining) {
+        index();
+        int[] driverOfAddress = fixedDriverOfAddress.clone();
+        double[] scores = new double[addresses.size()];
+        double totalScore = 0;
+        int numAssignments = 0;
+        for (int i = 0; i < driverOfAddress.length; i++) {
+            if (driverOfAddress[i] != AssignmentResult.UNASSIGNED) {
+                scores[i] = ScoreUtils.suitabilityScore(addresses.get(i), names.get(driverOfAddress[i]));
+                totalScore += scores[i];
+                numAssignments++;
+            }
+        }
+        if (remaining != null) {
+            int[] remainingDrivers = remaining.getDriverOfAddress();
+            double[] remainingScores = remaining.getScores();
+            for (int k = 0; k < remainingDrivers.length; k++) {
+                if (remainingDrivers[k] != AssignmentResult.UNASSIGNED) {
+                    driverOfAddress[keptAddresses[k]] = keptNames[remainingDrivers[k]];
+                    scores[keptAddresses[k]] = remainingScores[k];
+                }
+            }
+            totalScore += remaining.getTotalScore();
+            numAssignments += remaining.getNumAssignments();
+        }
+        return new AssignmentResult(addresses, names, driverOfAddress, scores, totalScore, numAssignments);
+    }
+
+    private void index() {
+        if (keptAddresses != null) {
+            return;
+        }
+        keptAddresses = keptIndices(addressRemoved);
+        keptNames = keptIndices(nameRemoved);
+    }
+
+    private static int[] keptIndices(boolean[] removed) {
+        int numKept = 0;
+        for (boolean isRemoved: removed) {
+            if (!isRemoved) {
+                numKept++;
+            }
+        }
+        int[] kept = new int[numKept];
+        int k = 0;
+        for (int i = 0; i < removed.length; i++) {
+            if (!removed[i]) {
+                kept[k++] = i;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,103 @@
+package douma.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Persistent pool of worker threads used to split matrix passes of the Munkres algorithm into
+ * contiguous stripes of rows. One executor can be shared by any number of solvers that do not run
+ * at the same time, and should be closed when no longer needed.
+ *
+ * Small matrices are not worth the hand-off, so a pass is only split when every stripe gets at
+ * least MIN_ENTRIES_PER_STRIPE matrix entries.
+ */
+public class RowStripeExecutor implements AutoCloseable {
+    static final int MIN_ENTRIES_PER_STRIPE = 1 << 15;
+
+    private final ExecutorService pool;
+    private final int numThreads;
+
+    /**
+     * Work done on the rows <code>fromRow</code> (inclusive) to <code>toRow</code> (exclusive)
+     */
+    interface StripeTask {
+        void run(int stripe, int fromRow, int toRow);
+    }
+
+    /**
+     * @param numThreads number of threads a pass is split across, including the calling thread
+     * @throws IllegalArgumentException if numThreads is less than 1
+     */
+    public RowStripeExecutor(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("At least one thread is required");
+        }
+        this.numThreads = numThreads;
+        this.pool = numThreads == 1 ? null : Executors.newFixedThreadPool(numThreads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "row-stripe-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Returns the number of stripes a pass over a numRows x numCols matrix is split into
+     */
+    int numStripes(int numRows, int numCols) {
+        long entries = (long) numRows * numCols;
+        long stripes = Math.min(numThreads, entries / MIN_ENTRIES_PER_STRIPE);
+        return (int) Math.max(1, Math.min(stripes, numRows));
+    }
+
+    /**
+     * Runs the task on <code>numStripes</code> stripes covering the rows 0 to numRows and waits for all
+     * of them. The last stripe runs on the calling thread.
+     */
+    void forEachStripe(int numRows, int numStripes, StripeTask task) {
+        if (numStripes <= 1) {
+            task.run(0, 0, numRows);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(numStripes - 1);
+        for (int s = 0; s < numStripes - 1; s++) {
+            final int stripe = s;
+            futures.add(pool.submit(() -> task.run(stripe, stripeStart(numRows, numStripes, stripe),
+                    stripeStart(numRows, numStripes, stripe + 1))));
+        }
+        task.run(numStripes - 1, stripeStart(numRows, numStripes, numStripes - 1), numRows);
+
+        for (Future<?> future: futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for row stripes", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Row stripe failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static int stripeStart(int numRows, int numStripes, int stripe) {
+        return (int) ((long) numRows * stripe / numStripes);
+    }
+}
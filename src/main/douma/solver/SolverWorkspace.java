@@ -0,0 +1,119 @@
+package douma.solver;
+
+import java.util.Arrays;
+
+/**
+ * Arrays used by {@link AssignmentMatrix}, kept between solves so that solving many instances does
+ * not allocate a new cost matrix, marking matrix and covering vectors each time. The matrices grow
+ * row by row: a solve adds rows if it has more than any earlier solve, and widens only the rows it
+ * uses that are narrower than it needs (after the matrix is oriented so that rows are the smaller
+ * side). A tall instance followed by a wide one therefore does not allocate the product of the two.
+ * The arrays are reset in place for each solve.
+ *
+ * A workspace is not thread safe. It must only be used by one solve at a time, and the matrix of a
+ * previous solve is no longer valid once the workspace has been handed to the next one. Results
+ * returned by the solvers are copies and stay valid.
+ */
+public class SolverWorkspace {
+    private int rowCapacity;
+    private int colCapacity;
+
+    double[][] costs = new double[0][0];
+    int[][] markedZeroes = new int[0][0];
+    boolean[] rowCoverings = new boolean[0];
+    boolean[] colCoverings = new boolean[0];
+    double[] rowDuals = new double[0];
+    double[] colDuals = new double[0];
+    double[] rowOffsets = new double[0];
+    double[] colOffsets = new double[0];
+    int[] starredColumnOfRow = new int[0];
+    int[] firstUncoveredZero = new int[0];
+    int[] columnsUncoveredInPass = new int[0];
+    int[] pathRows = new int[1];
+    int[] pathCols = new int[1];
+    double[] stripeMinima = new double[0];
+
+    /**
+     * Creates an empty workspace; it grows on first use
+     */
+    public SolverWorkspace() {
+    }
+
+    /**
+     * Creates a workspace sized for matrices of up to the given dimensions, so the first solves do
+     * not allocate either
+     */
+    public SolverWorkspace(int numAddresses, int numNames) {
+        reserve(Math.min(numAddresses, numNames), Math.max(numAddresses, numNames), 1);
+    }
+
+    /**
+     * Returns the number of rows the workspace holds without growing
+     */
+    public int getRowCapacity() {
+        return rowCapacity;
+    }
+
+    /**
+     * Returns the number of columns the workspace holds without growing, for any number of rows up
+     * to {@link #getRowCapacity()}
+     */
+    public int getColCapacity() {
+        return colCapacity;
+    }
+
+    /*
+     * Grows the arrays to hold numRows x numCols, then clears the markings, coverings, duals and
+     * starred columns of that region. Costs are left to be overwritten by the caller. The capacities
+     * are only updated once every allocation has succeeded.
+     */
+    void reserve(int numRows, int numCols, int numStripes) {
+        if (numRows > rowCapacity || numCols > colCapacity) {
+            double[][] newCosts = costs.length < numRows ? Arrays.copyOf(costs, numRows) : costs.clone();
+            int[][] newMarkedZeroes = markedZeroes.length < numRows
+                    ? Arrays.copyOf(markedZeroes, numRows) : markedZeroes.clone();
+            for (int i = 0; i < numRows; i++) {
+                if (newCosts[i] == null || newCosts[i].length < numCols) {
+                    newCosts[i] = new double[numCols];
+                    newMarkedZeroes[i] = new int[numCols];
+                }
+            }
+            if (rowCoverings.length < numRows) {
+                rowCoverings = new boolean[numRows];
+                rowDuals = new double[numRows];
+                rowOffsets = new double[numRows];
+                starredColumnOfRow = new int[numRows];
+                firstUncoveredZero = new int[numRows];
+                columnsUncoveredInPass = new int[numRows];
+                pathRows = new int[2 * numRows + 1];
+                pathCols = new int[2 * numRows + 1];
+            }
+            if (colCoverings.length < numCols) {
+                colCoverings = new boolean[numCols];
+                colDuals = new double[numCols];
+                colOffsets = new double[numCols];
+            }
+            costs = newCosts;
+            markedZeroes = newMarkedZeroes;
+
+            int narrowestRow = colCoverings.length;
+            for (double[] row: costs) {
+                narrowestRow = Math.min(narrowestRow, row.length);
+            }
+            rowCapacity = costs.length;
+            colCapacity = narrowestRow;
+        }
+        if (numStripes > stripeMinima.length) {
+            stripeMinima = new double[numStripes];
+        }
+
+        for (int i = 0; i < numRows; i++) {
+            Arrays.fill(markedZeroes[i], 0, numCols, 0);
+        }
+        Arrays.fill(rowCoverings, 0, numRows, false);
+        Arrays.fill(colCoverings, 0, numCols, false);
+        Arrays.fill(starredColumnOfRow, 0, numRows, -1);
+        Arrays.fill(rowDuals, 0, numRows, 0);
+        Arrays.fill(colDuals, 0, numCols, 0);
+    }
+}
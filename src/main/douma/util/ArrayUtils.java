@@ -1,7 +1,5 @@
 package douma.util;
 
-import java.util.HashSet;
-
 /**
  * Contains methods for operations on arrays
  */
@@ -20,9 +18,7 @@ public class ArrayUtils {
     public static double min(double[] array) {
         double minimum = Double.MAX_VALUE;
         for (int i = 0; i < array.length; i++) {
-            if (array[i] < minimum) {
-                minimum = array[i];
-            }
+            minimum = Math.min(minimum, array[i]);
         }
         return minimum;
     }
@@ -35,15 +31,38 @@ public class ArrayUtils {
     public static double[][] zeroizeRowMinimumInMatrix(double[][] matrix) {
         double minimum = 0;
         for (int i = 0; i < matrix.length; i++) {
-            minimum = ArrayUtils.min(matrix[i]);
-            for (int j = 0; j < matrix[0].length; j++) {
-                matrix[i][j] -= minimum;
+            double[] row = matrix[i];
+            minimum = ArrayUtils.min(row);
+            for (int j = 0; j < row.length; j++) {
+                row[j] -= minimum;
             }
         }
 
         return matrix;
     }
 
+    /**
+     * Same as {@link #zeroizeRowMinimumInMatrix(double[][])} restricted to the first <code>numRows</code>
+     * rows and <code>numCols</code> columns, for matrices whose arrays are larger than their contents
+     *
+     * @param rowMinima array with at least numRows entries; the minimum of each row is added to it
+     */
+    public static double[][] zeroizeRowMinimumInMatrix(double[][] matrix, int numRows, int numCols,
+                                                       double[] rowMinima) {
+        for (int i = 0; i < numRows; i++) {
+            double[] row = matrix[i];
+            double minimum = Double.MAX_VALUE;
+            for (int j = 0; j < numCols; j++) {
+                minimum = Math.min(minimum, row[j]);
+            }
+            for (int j = 0; j < numCols; j++) {
+                row[j] -= minimum;
+            }
+            rowMinima[i] += minimum;
+        }
+        return matrix;
+    }
+
     /*
      * Returns the transpose of the input matrix
      *
@@ -74,14 +93,28 @@ public class ArrayUtils {
      * @return new marking matrix with marked zeroes
      */
     public static int[][] markZeroesWithStars(final double[][] matrix, int[][] markMatrix) {
-        HashSet<Integer> markedRows = new HashSet<>();
-        HashSet<Integer> markedCols = new HashSet<>();
-        for (int i = 0; i < matrix.length; i++) {
-            for (int j = 0; j < matrix[0].length; j++) {
-                if (matrix[i][j] == 0 && !markedRows.contains(i) && !markedCols.contains(j)) {
+        if (matrix.length == 0) {
+            return markMatrix;
+        }
+        return markZeroesWithStars(matrix, markMatrix, new boolean[matrix[0].length], matrix.length, matrix[0].length);
+    }
+
+    /**
+     * Same as {@link #markZeroesWithStars(double[][], int[][])} restricted to the first <code>numRows</code>
+     * rows and <code>numCols</code> columns
+     *
+     * @param markedColumns scratch array with at least numCols entries, all false; on return the
+     *                      columns that received a star are true
+     */
+    public static int[][] markZeroesWithStars(final double[][] matrix, int[][] markMatrix, boolean[] markedColumns,
+                                              int numRows, int numCols) {
+        for (int i = 0; i < numRows; i++) {
+            double[] row = matrix[i];
+            for (int j = 0; j < numCols; j++) {
+                if (row[j] == 0 && !markedColumns[j]) {
                     markMatrix[i][j] = STAR;
-                    markedRows.add(i);
-                    markedCols.add(j);
+                    markedColumns[j] = true;
+                    break;
                 }
             }
         }
@@ -105,9 +138,19 @@ public class ArrayUtils {
                     "the length of coveredColumns");
         }
 
-        for (int i = 0; i < starredZeroes.length; i++) {
-            for (int j = 0; j < starredZeroes[0].length; j++) {
-                if (starredZeroes[i][j] == STAR) {
+        return coverColumnsWithStarredZeroes(starredZeroes, coveredColumns, starredZeroes.length, coveredColumns.length);
+    }
+
+    /**
+     * Same as {@link #coverColumnsWithStarredZeroes(int[][], boolean[])} restricted to the first
+     * <code>numRows</code> rows and <code>numCols</code> columns
+     */
+    public static boolean[] coverColumnsWithStarredZeroes(final int[][] starredZeroes, boolean[] coveredColumns,
+                                                          int numRows, int numCols) {
+        for (int i = 0; i < numRows; i++) {
+            int[] row = starredZeroes[i];
+            for (int j = 0; j < numCols; j++) {
+                if (row[j] == STAR) {
                     coveredColumns[j] = true;
                 }
             }
@@ -120,8 +163,16 @@ public class ArrayUtils {
      * @param array non-null array of boolean values
      */
     public static int numTrueValues(final boolean[] array) {
+        return numTrueValues(array, array.length);
+    }
+
+    /**
+     * Return the number of <code>true</code> elements among the first <code>length</code> elements of
+     * a boolean array
+     */
+    public static int numTrueValues(final boolean[] array, int length) {
         int numTrue = 0;
-        for (int i = 0; i < array.length; i++) {
+        for (int i = 0; i < length; i++) {
             if (array[i]) {
                 numTrue++;
             }
@@ -163,8 +214,16 @@ public class ArrayUtils {
      * @return index of first STAR found, -1 if not found
      */
     public static int findIndexOf(int[] array, int value) {
+        return findIndexOf(array, value, array.length);
+    }
+
+    /**
+     * Returns the index of the first instance of <code>value</code> among the first <code>length</code>
+     * elements of the input array, -1 if not found
+     */
+    public static int findIndexOf(int[] array, int value, int length) {
         int index = -1;
-        for (int i = 0; i < array.length; i++) {
+        for (int i = 0; i < length; i++) {
             if (array[i] == value) {
                 index = i;
                 break;
@@ -215,9 +274,76 @@ public class ArrayUtils {
      * @throws IndexOutOfBoundsException if colNumber is invalid
      */
     public static double[][] addToRow(double[][] array, int rowNumber, double value) {
-        for (int i = 0; i < array[0].length; i++) {
-            array[rowNumber][i] += value;
+        double[] row = array[rowNumber];
+        for (int i = 0; i < row.length; i++) {
+            row[i] += value;
         }
         return array;
     }
+
+    /**
+     * Returns the minimum of the entries that lie in an uncovered row and an uncovered column. Column
+     * coverings are passed as a mask holding 0 for uncovered and Double.POSITIVE_INFINITY for covered
+     * columns, so the inner loop is a branch-free min-reduction the JIT can vectorize.
+     *
+     * @param matrix non-null array of doubles
+     * @param coveredRows non-null array with one entry per row of matrix
+     * @param columnMask non-null array with one entry per column of matrix
+     *
+     * @return minimum uncovered value, Double.MAX_VALUE if every entry is covered
+     */
+    public static double minUncovered(final double[][] matrix, final boolean[] coveredRows, final double[] columnMask) {
+        return minUncovered(matrix, coveredRows, columnMask, 0, matrix.length, columnMask.length);
+    }
+
+    /**
+     * Same as {@link #minUncovered(double[][], boolean[], double[])} restricted to the rows
+     * <code>fromRow</code> (inclusive) to <code>toRow</code> (exclusive) and the first <code>numCols</code>
+     * columns
+     */
+    public static double minUncovered(final double[][] matrix, final boolean[] coveredRows, final double[] columnMask,
+                                      int fromRow, int toRow, int numCols) {
+        double minimum = Double.MAX_VALUE;
+        for (int i = fromRow; i < toRow; i++) {
+            if (coveredRows[i]) {
+                continue;
+            }
+            double[] row = matrix[i];
+            for (int j = 0; j < numCols; j++) {
+                minimum = Math.min(minimum, row[j] + columnMask[j]);
+            }
+        }
+        return minimum;
+    }
+
+    /**
+     * Adds <code>rowOffsets[i] + columnOffsets[j]</code> to each entry (i, j) of the matrix. This performs
+     * both halves of a dual update in a single row-major pass instead of a pass per row and a strided
+     * pass per column.
+     *
+     * @param matrix non-null array of doubles
+     * @param rowOffsets non-null array with one entry per row of matrix
+     * @param columnOffsets non-null array with one entry per column of matrix
+     */
+    public static double[][] addRowAndColumnOffsets(double[][] matrix, final double[] rowOffsets,
+                                                    final double[] columnOffsets) {
+        return addRowAndColumnOffsets(matrix, rowOffsets, columnOffsets, 0, matrix.length, columnOffsets.length);
+    }
+
+    /**
+     * Same as {@link #addRowAndColumnOffsets(double[][], double[], double[])} restricted to the rows
+     * <code>fromRow</code> (inclusive) to <code>toRow</code> (exclusive) and the first <code>numCols</code>
+     * columns
+     */
+    public static double[][] addRowAndColumnOffsets(double[][] matrix, final double[] rowOffsets,
+                                                    final double[] columnOffsets, int fromRow, int toRow, int numCols) {
+        for (int i = fromRow; i < toRow; i++) {
+            double[] row = matrix[i];
+            double rowOffset = rowOffsets[i];
+            for (int j = 0; j < numCols; j++) {
+                row[j] += rowOffset + columnOffsets[j];
+            }
+        }
+        return matrix;
+    }
 }
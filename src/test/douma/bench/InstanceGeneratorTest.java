@@ -0,0 +1,31 @@
+package douma.bench;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class InstanceGeneratorTest {
+    @Test
+    public void testLengthsAndDeterminism() {
+        List<String> addresses = new InstanceGenerator(7).setAddressLength(4, 6).generateAddresses(50);
+        Assert.assertEquals(50, addresses.size());
+        for (String address: addresses) {
+            Assert.assertTrue(address.length() >= 4 && address.length() <= 6);
+        }
+        Assert.assertEquals(addresses, new InstanceGenerator(7).setAddressLength(4, 6).generateAddresses(50));
+    }
+
+    @Test
+    public void testVowelProbability() {
+        List<String> names = new InstanceGenerator(7).setNameVowelProbability(1.0).generateNames(20);
+        for (String name: names) {
+            Assert.assertTrue(name.matches("[aeiou]+"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLengthRangeShouldThrowException() {
+        new InstanceGenerator(7).setNameLength(5, 4);
+    }
+}
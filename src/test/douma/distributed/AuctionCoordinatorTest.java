@@ -0,0 +1,95 @@
+package douma.distributed;
+
+import douma.bench.InstanceGenerator;
+import douma.solver.AssignmentSolver;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class AuctionCoordinatorTest {
+    private static final List<String> ADDRESSES = Arrays.asList("main", "elm", "forest lane", "OddRoad",
+            "MainStreet", "44 Fake Street", "1 Infinite Loop");
+    private static final List<String> NAMES = Arrays.asList("Huck", "Tom", "Becky Thatcher", "Kenneth", "Roger");
+
+    @Test
+    public void testShardedAuctionMatchesAssignmentSolver() throws Exception {
+        Assert.assertEquals(new AssignmentSolver(ADDRESSES, NAMES).solve(), solveWithLocalWorkers(ADDRESSES, NAMES), .001);
+        Assert.assertEquals(new AssignmentSolver(NAMES, ADDRESSES).solve(), solveWithLocalWorkers(NAMES, ADDRESSES), .001);
+    }
+
+    @Test
+    public void testWorkerProcessRestartedMidSolve() throws Exception {
+        InstanceGenerator generator = new InstanceGenerator(3);
+        List<String> addresses = generator.generateAddresses(300);
+        List<String> names = generator.generateNames(200);
+        AuctionCoordinator coordinator = new AuctionCoordinator(addresses, names, 2);
+        coordinator.setRestartTimeoutMillis(30000);
+        coordinator.start(0);
+        List<Process> workers = new ArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int s = 0; s < coordinator.getNumShards(); s++) {
+                workers.add(coordinator.launchLocalWorker());
+            }
+            Future<Double> totalScore = executor.submit(coordinator::solve);
+            // both workers have answered INIT once bidding has started
+            while (coordinator.getNumRounds() == 0 && !totalScore.isDone()) {
+                Thread.sleep(1);
+            }
+
+            workers.get(0).destroyForcibly().waitFor();
+            workers.add(coordinator.launchLocalWorker());
+
+            Assert.assertEquals(new AssignmentSolver(addresses, names).solve(), totalScore.get(60, TimeUnit.SECONDS), .001);
+            Assert.assertEquals(names.size(), coordinator.getAssignments().size());
+        } finally {
+            executor.shutdownNow();
+            for (Process worker: workers) {
+                worker.destroyForcibly();
+            }
+            coordinator.stop();
+        }
+    }
+
+    @Test
+    public void testUnresponsiveWorkerIsReplaced() throws Exception {
+        AuctionCoordinator coordinator = new AuctionCoordinator(ADDRESSES, NAMES, 1);
+        coordinator.setWorkerTimeoutMillis(500);
+        coordinator.start(0);
+        // connects first but never answers, so the worker started after it takes over its shard
+        try (Socket unresponsive = new Socket("127.0.0.1", coordinator.getPort())) {
+            Thread worker = new Thread(new AuctionWorker("127.0.0.1", coordinator.getPort()));
+            worker.setDaemon(true);
+            worker.start();
+
+            Assert.assertEquals(new AssignmentSolver(ADDRESSES, NAMES).solve(), coordinator.solve(), .001);
+        } finally {
+            coordinator.stop();
+        }
+    }
+
+    private static double solveWithLocalWorkers(List<String> addresses, List<String> names) throws Exception {
+        AuctionCoordinator coordinator = new AuctionCoordinator(addresses, names, 2);
+        coordinator.start(0);
+        try {
+            for (int s = 0; s < coordinator.getNumShards(); s++) {
+                Thread worker = new Thread(new AuctionWorker("127.0.0.1", coordinator.getPort()));
+                worker.setDaemon(true);
+                worker.start();
+            }
+            double totalScore = coordinator.solve();
+            Assert.assertEquals(Math.min(addresses.size(), names.size()), coordinator.getAssignments().size());
+            return totalScore;
+        } finally {
+            coordinator.stop();
+        }
+    }
+}
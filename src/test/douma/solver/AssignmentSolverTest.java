@@ -0,0 +1,147 @@
+package douma.solver;
+
+import douma.bench.InstanceGenerator;
+import douma.util.Pair;
+import douma.util.ScoreUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AssignmentSolverTest {
+    private static final List<String> ADDRESSES = Arrays.asList("main", "elm", "forest lane", "OddRoad",
+            "MainStreet");
+    private static final List<String> NAMES = Arrays.asList("Huck", "Tom", "Becky Thatcher");
+
+    @Test
+    public void testResultMatchesAssignments() {
+        AssignmentSolver solver = new AssignmentSolver(ADDRESSES, NAMES);
+        double totalScore = solver.solve();
+        AssignmentResult result = solver.getResult();
+
+        int[] driverOfAddress = result.getDriverOfAddress();
+        double[] scores = result.getScores();
+        Assert.assertEquals(ADDRESSES.size(), driverOfAddress.length);
+        Assert.assertEquals(3, result.getNumAssignments());
+        Assert.assertEquals(totalScore, result.getTotalScore(), .001);
+
+        double sum = 0;
+        for (int i = 0; i < driverOfAddress.length; i++) {
+            if (driverOfAddress[i] == AssignmentResult.UNASSIGNED) {
+                Assert.assertEquals(0, scores[i], .001);
+            } else {
+                Assert.assertEquals(ScoreUtils.suitabilityScore(ADDRESSES.get(i), NAMES.get(driverOfAddress[i])),
+                        scores[i], .001);
+                sum += scores[i];
+            }
+        }
+        Assert.assertEquals(totalScore, sum, .001);
+
+        List<Pair<String, String>> assignments = solver.getAssignments();
+        Assert.assertEquals(3, assignments.size());
+        Assert.assertSame(assignments, result.getAssignments());
+    }
+
+    @Test
+    public void testGetAssignmentsBeforeSolve() {
+        AssignmentSolver solver = new AssignmentSolver(ADDRESSES, NAMES);
+        Assert.assertNull(solver.getAssignments());
+        Assert.assertNull(solver.getResult());
+    }
+
+    @Test
+    public void testStripedSolveMatchesSingleThreaded() {
+        List<String> addresses = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            addresses.add(ADDRESSES.get(i % ADDRESSES.size()) + " " + i);
+            names.add(NAMES.get(i % NAMES.size()) + i % 17);
+        }
+        AssignmentSolver solver = new AssignmentSolver(addresses, names);
+        double expected = solver.solve();
+
+        try (RowStripeExecutor executor = new RowStripeExecutor(4)) {
+            AssignmentSolver stripedSolver = new AssignmentSolver(addresses, names, executor);
+            Assert.assertEquals(expected, stripedSolver.solve(), .001);
+            Assert.assertArrayEquals(solver.getResult().getDriverOfAddress(),
+                    stripedSolver.getResult().getDriverOfAddress());
+        }
+    }
+
+    @Test
+    public void testPinnedAssignmentsAreKept() {
+        AssignmentSolver solver = new AssignmentSolver(ADDRESSES, NAMES);
+        solver.setPinnedAssignments(Arrays.asList(new Pair<>("elm", "Becky Thatcher")));
+        double totalScore = solver.solve();
+
+        int[] driverOfAddress = solver.getResult().getDriverOfAddress();
+        Assert.assertEquals(2, driverOfAddress[1]);
+        Assert.assertEquals(3, solver.getResult().getNumAssignments());
+
+        double remainder = new AssignmentSolver(Arrays.asList("main", "forest lane", "OddRoad", "MainStreet"),
+                Arrays.asList("Huck", "Tom")).solve();
+        Assert.assertEquals(ScoreUtils.suitabilityScore("elm", "Becky Thatcher") + remainder, totalScore, .001);
+    }
+
+    @Test
+    public void testAllDriversPinned() {
+        AssignmentSolver solver = new AssignmentSolver(ADDRESSES, Arrays.asList("Tom"));
+        solver.setPinnedAssignments(Arrays.asList(new Pair<>("main", "Tom")));
+        Assert.assertEquals(ScoreUtils.suitabilityScore("main", "Tom"), solver.solve(), .001);
+        Assert.assertEquals(1, solver.getAssignments().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPinnedAddressShouldThrowException() {
+        AssignmentSolver solver = new AssignmentSolver(ADDRESSES, NAMES);
+        solver.setPinnedAssignments(Arrays.asList(new Pair<>("nowhere", "Tom")));
+        solver.solve();
+    }
+
+    @Test
+    public void testPresolveKeepsTotalScore() {
+        InstanceGenerator generator = new InstanceGenerator(7);
+        List<String> addresses = generator.generateAddresses(60);
+        List<String> names = generator.generateNames(8);
+        double expected = new AssignmentSolver(addresses, names).solve();
+
+        AssignmentSolver solver = new AssignmentSolver(addresses, names);
+        solver.setPresolve(true);
+        Assert.assertEquals(expected, solver.solve(), .001);
+        Assert.assertFalse(solver.getPresolveSteps().isEmpty());
+        Assert.assertEquals(names.size(), solver.getResult().getNumAssignments());
+    }
+
+    @Test
+    public void testPresolveForcesSingleDriver() {
+        AssignmentSolver solver = new AssignmentSolver(ADDRESSES, Arrays.asList("Kenneth"));
+        solver.setPresolve(true);
+        double expected = new AssignmentSolver(ADDRESSES, Arrays.asList("Kenneth")).solve();
+        Assert.assertEquals(expected, solver.solve(), .001);
+        PresolveStep first = solver.getPresolveSteps().get(0);
+        Assert.assertEquals(PresolveStep.Kind.FORCED_ASSIGNMENT, first.getKind());
+        Assert.assertEquals(0, solver.getResult().getDriverOfAddress()[first.getAddress()]);
+    }
+
+    @Test
+    public void testWorkspaceReusedAcrossInstances() {
+        SolverWorkspace workspace = new SolverWorkspace();
+        InstanceGenerator generator = new InstanceGenerator(11);
+        int[][] sizes = {{30, 12}, {8, 20}, {3, 3}, {25, 25}};
+        for (int[] size: sizes) {
+            List<String> addresses = generator.generateAddresses(size[0]);
+            List<String> names = generator.generateNames(size[1]);
+            AssignmentSolver solver = new AssignmentSolver(addresses, names);
+            solver.setWorkspace(workspace);
+            AssignmentSolver freshSolver = new AssignmentSolver(addresses, names);
+            Assert.assertEquals(freshSolver.solve(), solver.solve(), .001);
+            Assert.assertArrayEquals(freshSolver.getResult().getDriverOfAddress(),
+                    solver.getResult().getDriverOfAddress());
+        }
+        // only the twelve rows of the first instance are 30 wide; the rows added later are 25 wide
+        Assert.assertEquals(25, workspace.getRowCapacity());
+        Assert.assertEquals(25, workspace.getColCapacity());
+    }
+}
@@ -0,0 +1,54 @@
+package douma.solver;
+
+import douma.bench.InstanceGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class BlockDecompositionSolverTest {
+    // Even length addresses only score with vowels and odd length ones only with consonants, so the
+    // two regions never compete with each other
+    private static final List<String> ADDRESSES = Arrays.asList("main", "forest", "elm", "oddroad",
+            "baker st", "1 Infinite Loop");
+    private static final List<String> NAMES = Arrays.asList("Aie", "Ouia", "Brr", "Psst", "Tsk");
+
+    @Test
+    public void testDetectedRegionsNeedNoRepair() {
+        BlockDecompositionSolver solver = new BlockDecompositionSolver(ADDRESSES, NAMES);
+        double totalScore = solver.solve();
+
+        Assert.assertEquals(new AssignmentSolver(ADDRESSES, NAMES).solve(), totalScore, .001);
+        Assert.assertEquals(0, solver.getNumRepairRounds());
+        Assert.assertTrue(solver.getNumBlocks() >= 2);
+        Assert.assertEquals(NAMES.size(), solver.getResult().getNumAssignments());
+    }
+
+    @Test
+    public void testBadBlocksAreRepaired() {
+        InstanceGenerator generator = new InstanceGenerator(5);
+        List<String> addresses = generator.generateAddresses(40);
+        List<String> names = generator.generateNames(25);
+        int[] blockOfAddress = new int[addresses.size()];
+        int[] blockOfName = new int[names.size()];
+        for (int i = 0; i < blockOfAddress.length; i++) {
+            blockOfAddress[i] = i % 4;
+        }
+        for (int j = 0; j < blockOfName.length; j++) {
+            blockOfName[j] = (j + 1) % 4;
+        }
+
+        BlockDecompositionSolver solver = new BlockDecompositionSolver(addresses, names);
+        solver.setBlocks(blockOfAddress, blockOfName);
+        solver.setNumThreads(2);
+        Assert.assertEquals(new AssignmentSolver(addresses, names).solve(), solver.solve(), .001);
+        Assert.assertEquals(names.size(), solver.getResult().getNumAssignments());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBlocksOfWrongLengthShouldThrowException() {
+        BlockDecompositionSolver solver = new BlockDecompositionSolver(ADDRESSES, NAMES);
+        solver.setBlocks(new int[ADDRESSES.size()], new int[NAMES.size() - 1]);
+    }
+}
@@ -0,0 +1,67 @@
+package douma.solver;
+
+import douma.util.Pair;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CapacitatedAssignmentSolverTest {
+    private static final List<String> ADDRESSES = Arrays.asList("main", "elm", "forest lane", "OddRoad",
+            "MainStreet", "44 Fake Street", "1 Infinite Loop", "Baker St");
+    private static final List<String> NAMES = Arrays.asList("Huck", "Tom", "Becky Thatcher");
+
+    @Test
+    public void testUnitCapacitiesMatchAssignmentSolver() {
+        CapacitatedAssignmentSolver solver = new CapacitatedAssignmentSolver(ADDRESSES, NAMES, new int[]{1, 1, 1});
+        double expected = new AssignmentSolver(ADDRESSES, NAMES).solve();
+        Assert.assertEquals(expected, solver.solve(), .001);
+        Assert.assertEquals(3, solver.getAssignments().size());
+    }
+
+    @Test
+    public void testCapacitiesMatchDuplicatedDrivers() {
+        int[] capacities = {3, 1, 2};
+        List<String> duplicatedNames = new ArrayList<>();
+        for (int j = 0; j < NAMES.size(); j++) {
+            for (int k = 0; k < capacities[j]; k++) {
+                duplicatedNames.add(NAMES.get(j));
+            }
+        }
+        double expected = new AssignmentSolver(ADDRESSES, duplicatedNames).solve();
+
+        CapacitatedAssignmentSolver solver = new CapacitatedAssignmentSolver(ADDRESSES, NAMES, capacities);
+        Assert.assertEquals(expected, solver.solve(), .001);
+
+        List<Pair<String, String>> assignments = solver.getAssignments();
+        Assert.assertEquals(6, assignments.size());
+        Map<String, Integer> load = new HashMap<>();
+        for (Pair<String, String> pair: assignments) {
+            load.merge(pair.second, 1, Integer::sum);
+        }
+        for (int j = 0; j < NAMES.size(); j++) {
+            Assert.assertTrue(load.getOrDefault(NAMES.get(j), 0) <= capacities[j]);
+        }
+    }
+
+    @Test
+    public void testCapacityExceedingAddresses() {
+        List<String> addresses = Arrays.asList("main", "elm");
+        CapacitatedAssignmentSolver solver = new CapacitatedAssignmentSolver(addresses, NAMES, new int[]{5, 0, 5});
+        solver.solve();
+        List<Pair<String, String>> assignments = solver.getAssignments();
+        Assert.assertEquals(2, assignments.size());
+        for (Pair<String, String> pair: assignments) {
+            Assert.assertFalse("Tom".equals(pair.second));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedCapacitiesShouldThrowException() {
+        new CapacitatedAssignmentSolver(ADDRESSES, NAMES, new int[]{1, 1});
+    }
+}
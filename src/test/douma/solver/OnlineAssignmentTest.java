@@ -0,0 +1,67 @@
+package douma.solver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OnlineAssignmentTest {
+    private static final List<String> ADDRESSES = Arrays.asList("main", "elm", "forest lane", "OddRoad",
+            "MainStreet", "44 Fake Street", "1 Infinite Loop", "Baker St");
+    private static final List<String> NAMES = Arrays.asList("Huck", "Tom", "Becky Thatcher", "Kenneth");
+
+    @Test
+    public void testInsertAndRetireKeepOptimalScore() {
+        OnlineAssignment online = new OnlineAssignment(NAMES, ADDRESSES.size());
+        Map<Integer, String> live = new LinkedHashMap<>();
+        for (String address: ADDRESSES) {
+            live.put(online.insert(address), address);
+            assertOptimal(online, live);
+        }
+        // retire every other address, then the rest
+        for (int pass = 0; pass < 2; pass++) {
+            List<Integer> handles = new ArrayList<>(live.keySet());
+            for (int k = pass == 0 ? 1 : 0; k < handles.size(); k += pass == 0 ? 2 : 1) {
+                online.retire(handles.get(k));
+                live.remove(handles.get(k));
+                assertOptimal(online, live);
+            }
+        }
+        Assert.assertEquals(0, online.getNumAddresses());
+        Assert.assertEquals(0, online.getTotalScore(), .001);
+    }
+
+    @Test
+    public void testDriverOfAddress() {
+        OnlineAssignment online = new OnlineAssignment(Arrays.asList("Kenneth"), 2);
+        int first = online.insert("OddRoad");
+        int second = online.insert("elm");
+        Assert.assertEquals(0, online.getDriverOf(first));
+        Assert.assertEquals(AssignmentResult.UNASSIGNED, online.getDriverOf(second));
+        online.retire(first);
+        Assert.assertEquals(0, online.getDriverOf(second));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInsertBeyondCapacityShouldThrowException() {
+        OnlineAssignment online = new OnlineAssignment(NAMES, 1);
+        online.insert("main");
+        online.insert("elm");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRetireUnknownHandleShouldThrowException() {
+        OnlineAssignment online = new OnlineAssignment(NAMES, 2);
+        online.retire(online.insert("main") + 1);
+    }
+
+    private static void assertOptimal(OnlineAssignment online, Map<Integer, String> live) {
+        double expected = live.isEmpty() ? 0 : new AssignmentSolver(new ArrayList<>(live.values()), NAMES).solve();
+        Assert.assertEquals(expected, online.getTotalScore(), .001);
+        Assert.assertTrue(online.getAssignments().size() <= Math.min(live.size(), NAMES.size()));
+    }
+}
@@ -119,4 +119,27 @@ public class ArrayUtilsTest {
         Assert.assertEquals(0, column[1]);
         Assert.assertEquals(2, column[2]);
     }
+
+    @Test
+    public void testMinUncovered() {
+        double[][] matrix = {{1, 2, 3}, {4, 0.5, 6}, {7, 8, 9}};
+        boolean[] coveredRows = {false, true, false};
+        double[] columnMask = {Double.POSITIVE_INFINITY, 0, 0};
+        Assert.assertEquals(2, ArrayUtils.minUncovered(matrix, coveredRows, columnMask), .001);
+
+        coveredRows = new boolean[]{true, true, true};
+        Assert.assertEquals(Double.MAX_VALUE, ArrayUtils.minUncovered(matrix, coveredRows, columnMask), .001);
+    }
+
+    @Test
+    public void testAddRowAndColumnOffsets() {
+        double[][] matrix = {{1, 2, 3}, {4, 5, 6}};
+        matrix = ArrayUtils.addRowAndColumnOffsets(matrix, new double[]{2, 0}, new double[]{0, -2, -2});
+        Assert.assertEquals(3, matrix[0][0], .001);
+        Assert.assertEquals(2, matrix[0][1], .001);
+        Assert.assertEquals(3, matrix[0][2], .001);
+        Assert.assertEquals(4, matrix[1][0], .001);
+        Assert.assertEquals(3, matrix[1][1], .001);
+        Assert.assertEquals(4, matrix[1][2], .001);
+    }
 }